@@ -43,6 +43,11 @@ unsigned long lastRotate      = 0;
 unsigned long lastScroll      = 0;
 int16_t       scrollX         = SCREEN_WIDTH;
 bool          staticNeedsDraw = true;
+String        configEtag      = "";   // ETag of the last applied remote config
+unsigned long nextPollDelay   = 0;    // Server's hint for the next poll in ms, 0 if none
+
+// Response headers kept by HTTPClient for every request
+const char*   collectedHeaders[] = {"ETag", "X-Next-Poll-After-Ms"};
 
 // Display a non-scrolling message
 void showStatic(const Msg &m) {
@@ -164,9 +169,24 @@ void handleResponse(HTTPClient& http) {
     m.scroll   = o["scroll"]   | false;
     cfg.messages.push_back(m);
   }
+  configEtag = http.header("ETag");
   Serial.printf("[CONFIG] %u messages loaded\n", (unsigned)cfg.messages.size());
 }
 
+// Remember when the server wants the next poll; it spreads devices over time
+void readPollHint(HTTPClient& http) {
+  String hint = http.header("X-Next-Poll-After-Ms");
+  nextPollDelay = hint.isEmpty() ? 0 : strtoul(hint.c_str(), nullptr, 10);
+}
+
+// Add device token and conditional request headers
+void prepareRequest(HTTPClient& http) {
+  http.collectHeaders(collectedHeaders, 2);
+  http.addHeader("X-Device-Token", cfg.deviceToken);
+  http.addHeader("X-Firmware-Version", FW_VERSION);
+  if (!configEtag.isEmpty()) http.addHeader("If-None-Match", configEtag);
+}
+
 // Follow HTTP redirect to new location
 void fetchConfigFromLocation(const String& location) {
   HTTPClient http;
@@ -180,10 +200,14 @@ void fetchConfigFromLocation(const String& location) {
   else if (location.startsWith("http://")) begun = http.begin(location);
   if (!begun) return;
 
-  http.addHeader("X-Device-Token", cfg.deviceToken);
+  prepareRequest(http);
   int code = http.GET();
   if (code == HTTP_CODE_OK) {
+    readPollHint(http);
     handleResponse(http);
+  } else if (code == HTTP_CODE_NOT_MODIFIED) {
+    readPollHint(http);
+    Serial.println("[HTTP] Config unchanged");
   } else {
     Serial.printf("[HTTP] Follow-up request failed: %d\n", code);
   }
@@ -192,6 +216,7 @@ void fetchConfigFromLocation(const String& location) {
 
 // Fetch configuration from server, try HTTPS then HTTP, handle redirects
 void fetchRemoteConfig() {
+  nextPollDelay = 0;  // fall back to the update interval unless the server answers
   if (WiFi.status() != WL_CONNECTED) {
     Serial.println("[HTTP] Skipping fetch: no Wi-Fi connection");
     return;
@@ -220,15 +245,22 @@ void fetchRemoteConfig() {
       continue;
     }
 
-    http.addHeader("X-Device-Token", cfg.deviceToken);
+    prepareRequest(http);
     int httpCode = http.GET();
     Serial.printf("[HTTP] Response code: %d\n", httpCode);
 
     if (httpCode == HTTP_CODE_OK) {
+      readPollHint(http);
       handleResponse(http);
       http.end();
       return;
     }
+    else if (httpCode == HTTP_CODE_NOT_MODIFIED) {
+      readPollHint(http);
+      Serial.println("[HTTP] Config unchanged");
+      http.end();
+      return;
+    }
     else if (httpCode == HTTP_CODE_MOVED_PERMANENTLY
           || httpCode == HTTP_CODE_FOUND) {
       String location = http.getLocation();
@@ -282,10 +314,12 @@ void loop() {
   if (cfg.messages.empty()) return;  // nothing to display
   unsigned long now = millis();
 
-  // periodically fetch new config
-  if (now - lastUpdate >= cfg.updateInterval * 1000UL) {
+  // periodically fetch new config, when the server asks for it if it did
+  unsigned long pollDelay = nextPollDelay ? nextPollDelay : cfg.updateInterval * 1000UL;
+  if (now - lastUpdate >= pollDelay) {
     fetchRemoteConfig();
-    lastUpdate = now;
+    lastUpdate = millis();  // the hint counts from the response
+    now = lastUpdate;
   }
 
   Msg &cur = cfg.messages[currentIdx];
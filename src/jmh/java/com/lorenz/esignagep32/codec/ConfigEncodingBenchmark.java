@@ -0,0 +1,70 @@
+package com.lorenz.esignagep32.codec;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.dto.MessageDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a device configuration as JSON with Jackson and with the
+ * compact binary codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConfigEncodingBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int messages;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ConfigDto config;
+
+    @Setup
+    public void createConfig() {
+        config = new ConfigDto();
+        config.setWifiSsid("office-wifi");
+        config.setWifiPassword("correct horse battery staple");
+        config.setNtpServer("pool.ntp.org");
+        config.setServerDomain("signage.example.com");
+        config.setDeviceId(4711L);
+        config.setDeviceToken(UUID.randomUUID().toString());
+        config.setConfigVersion(42);
+        config.setUpdateIntervalSeconds(60);
+        config.setRotateIntervalSeconds(10);
+
+        List<MessageDto> list = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            MessageDto message = new MessageDto();
+            message.setId((long) i);
+            message.setText("Message " + i + " of the benchmark device");
+            message.setFontSize(2);
+            message.setScroll(i % 2 == 0);
+            list.add(message);
+        }
+        config.setMessages(list);
+    }
+
+    @Benchmark
+    public byte[] jackson() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(config);
+    }
+
+    @Benchmark
+    public byte[] binary() {
+        return ConfigBinaryCodec.encode(config);
+    }
+}
@@ -0,0 +1,166 @@
+package com.lorenz.esignagep32.security;
+
+import com.lorenz.esignagep32.ESignageP32;
+import com.lorenz.esignagep32.model.Device;
+import com.lorenz.esignagep32.service.DeviceService;
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Security filter overhead of a conditional device poll answered with
+ * 304 Not Modified: the stateless device chain against the single browser
+ * chain the device API used to share.
+ * <p>
+ * The device chain is the bean of the running application, the former
+ * chain is rebuilt from the same {@link HttpSecurity}; both are invoked
+ * through a {@link FilterChainProxy} as in production, without Tomcat,
+ * rate limit or controller. The former chain permitted the device paths
+ * and left the token to the controller, so its terminal handler checks
+ * the token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeviceFilterChainBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private ServletContext servletContext;
+    private FilterChainProxy deviceChain;
+    private FilterChainProxy formerChain;
+    private DeviceTokenVerifier tokenVerifier;
+    private Long deviceId;
+    private String token;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        // Arguments rather than default properties, which application.yml would override
+        context = new SpringApplicationBuilder(ESignageP32.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--app.default-user.username=bench",
+                "--app.default-user.password=bench");
+        // Requests share the server's context; Spring Security caches matchers per servlet context
+        servletContext = ((WebApplicationContext) context).getServletContext();
+        tokenVerifier = context.getBean(DeviceTokenVerifier.class);
+        Device device = context.getBean(DeviceService.class).createDevice("bench", "bench");
+        deviceId = device.getId();
+        token = device.getDeviceToken();
+        uri = "/api/config/" + deviceId;
+
+        deviceChain = proxy(context.getBean("deviceFilterChain", SecurityFilterChain.class));
+        formerChain = proxy(formerChain(context.getBean(HttpSecurity.class)));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    /**
+     * The stateless device chain; the token is checked by its filter.
+     */
+    @Benchmark
+    public int deviceChain() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        deviceChain.doFilter(poll(), response, (request, res) ->
+                ((HttpServletResponse) res).setStatus(HttpServletResponse.SC_NOT_MODIFIED));
+        return response.getStatus();
+    }
+
+    /**
+     * The former single chain with the token checked behind it.
+     */
+    @Benchmark
+    public int singleChain() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        formerChain.doFilter(poll(), response, checkTokenAndAnswer());
+        return response.getStatus();
+    }
+
+    private MockHttpServletRequest poll() {
+        MockHttpServletRequest request = new MockHttpServletRequest(servletContext, HttpMethod.GET.name(), uri);
+        request.addHeader(DeviceTokenAuthenticationFilter.DEVICE_TOKEN_HEADER, token);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"1\"");
+        return request;
+    }
+
+    private FilterChain checkTokenAndAnswer() {
+        return (request, response) -> {
+            String header = ((HttpServletRequest) request).getHeader(DeviceTokenAuthenticationFilter.DEVICE_TOKEN_HEADER);
+            ((HttpServletResponse) response).setStatus(tokenVerifier.verify(deviceId, header)
+                    ? HttpServletResponse.SC_NOT_MODIFIED : HttpServletResponse.SC_UNAUTHORIZED);
+        };
+    }
+
+    /**
+     * The browser chain as it was before the device API had its own.
+     */
+    private static SecurityFilterChain formerChain(HttpSecurity http) throws Exception {
+        http
+                .csrf(Customizer.withDefaults())
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(
+                                HttpMethod.GET,
+                                "/login",
+                                "/flash.html",
+                                "/js/flash.js",
+                                "/firmware/**",
+                                "/api/setup",
+                                "/api/config/**",
+                                "/api/frames/**"
+                        ).permitAll()
+                        .anyRequest().authenticated()
+                )
+                .formLogin(form -> form
+                        .loginPage("/login")
+                        .loginProcessingUrl("/login")
+                        .defaultSuccessUrl("/devices", true)
+                        .permitAll()
+                )
+                .logout(logout -> logout
+                        .logoutUrl("/logout")
+                        .logoutSuccessUrl("/login?logout")
+                        .permitAll()
+                );
+        return http.build();
+    }
+
+    private static FilterChainProxy proxy(SecurityFilterChain chain) throws ServletException {
+        FilterChainProxy proxy = new FilterChainProxy(chain);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+}
@@ -0,0 +1,115 @@
+package com.lorenz.esignagep32.security;
+
+import com.lorenz.esignagep32.ratelimit.StripedTokenBuckets;
+import com.lorenz.esignagep32.repository.DeviceRepository;
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import com.lorenz.esignagep32.service.SignedDeviceTokens;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.lang.reflect.Proxy;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request checks of the device API in front of the controllers:
+ * extracting the device ID from the path, verifying random and signed
+ * tokens, and the rate limit buckets.
+ * <p>
+ * Tokens are verified against a warm index, as for every poll but a
+ * device's first; the repository is never reached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenCheckBenchmark {
+
+    private static final int DEVICES = 10_000;
+
+    private DeviceTokenVerifier uuidVerifier;
+    private DeviceTokenVerifier signedVerifier;
+    private String[] uuidTokens;
+    private String[] signedTokens;
+    private String[] paths;
+    private StripedTokenBuckets buckets;
+
+    @Setup
+    public void createTokens() {
+        uuidTokens = new String[DEVICES];
+        paths = new String[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            uuidTokens[i] = UUID.randomUUID().toString();
+            paths[i] = "/api/config/" + i + "/watch";
+        }
+        // Only the token lookup of the repository is used by the verifier
+        DeviceRepository repo = (DeviceRepository) Proxy.newProxyInstance(
+                DeviceRepository.class.getClassLoader(), new Class<?>[]{DeviceRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("findDeviceTokenById")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return Optional.of(uuidTokens[((Long) args[0]).intValue()]);
+                });
+        uuidVerifier = new DeviceTokenVerifier(repo, new SignedDeviceTokens(null, false, ""));
+
+        byte[] key = new byte[32];
+        ThreadLocalRandom.current().nextBytes(key);
+        SignedDeviceTokens signing = new SignedDeviceTokens(null, true,
+                "1:" + Base64.getEncoder().encodeToString(key));
+        signedVerifier = new DeviceTokenVerifier(repo, signing);
+        signedTokens = new String[DEVICES];
+        for (int i = 0; i < DEVICES; i++) {
+            signedTokens[i] = signing.mint((long) i, 0);
+            // Warm the index, as after each device's first poll
+            uuidVerifier.verify((long) i, uuidTokens[i]);
+        }
+
+        // Address limits; buckets drain within the warmup, so mostly rejections are measured,
+        // which take the same single CAS as grants
+        buckets = new StripedTokenBuckets(65536, 50, 500);
+    }
+
+    @Benchmark
+    public long devicePath() {
+        return DeviceRequestPaths.deviceId(paths[nextDevice()]);
+    }
+
+    @Benchmark
+    public boolean uuidToken() {
+        int device = nextDevice();
+        return uuidVerifier.verify((long) device, uuidTokens[device]);
+    }
+
+    @Benchmark
+    public boolean signedToken() {
+        int device = nextDevice();
+        return signedVerifier.verify((long) device, signedTokens[device]);
+    }
+
+    @Benchmark
+    public long rateLimit() {
+        return buckets.tryAcquire(nextDevice());
+    }
+
+    /**
+     * Contended buckets, as under a poll storm served by many threads.
+     */
+    @Benchmark
+    @Threads(4)
+    public long rateLimitContended() {
+        return buckets.tryAcquire(nextDevice());
+    }
+
+    private static int nextDevice() {
+        return ThreadLocalRandom.current().nextInt(DEVICES);
+    }
+}
@@ -0,0 +1,82 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.ESignageP32;
+import com.lorenz.esignagep32.dto.ConfigDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a device configuration from the database, as on a snapshot
+ * cache miss.
+ * <p>
+ * Runs the full application against an in-memory H2 database, so every
+ * invocation pays for its transaction, the device and message queries
+ * and the mapping to DTOs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConfigLoadBenchmark {
+
+    @Param({"1", "20", "200"})
+    private int messages;
+
+    private ConfigurableApplicationContext context;
+    private DeviceService deviceService;
+    private Long deviceId;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        // Arguments rather than default properties, which application.yml would override
+        context = new SpringApplicationBuilder(ESignageP32.class).run(
+                "--spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--app.default-user.username=bench",
+                "--app.default-user.password=bench");
+        deviceService = context.getBean(DeviceService.class);
+
+        deviceId = deviceService.createDevice("bench", "bench").getId();
+        for (int i = 0; i < messages; i++) {
+            deviceService.addMessage(deviceId, "Message " + i + " of the benchmark device", 2, i % 2 == 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    /**
+     * Device and messages mapped to the DTO, without encoding.
+     */
+    @Benchmark
+    public ConfigDto getConfigDto() {
+        return deviceService.getConfigDto(deviceId);
+    }
+
+    /**
+     * The whole cache miss: loading plus JSON and binary encoding.
+     */
+    @Benchmark
+    public ConfigSnapshot loadConfigSnapshot() {
+        return deviceService.loadConfigSnapshot(deviceId);
+    }
+}
@@ -0,0 +1,184 @@
+package com.lorenz.esignagep32.loadtest;
+
+import com.lorenz.esignagep32.ESignageP32;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test replaying a fleet of ESP32 devices against the server.
+ * <p>
+ * Starts the application on an in-memory H2 database, provisions the
+ * devices with their messages directly through JDBC, and lets every device
+ * poll over HTTP on its own virtual thread, see {@link SimulatedDevice}.
+ * A line with throughput and latency percentiles is printed every report
+ * period; a summary follows at the end. Periods within the first update
+ * interval, while devices are still powering up, are marked with {@code *}
+ * and left out of the summary.
+ * <p>
+ * Client and server share the machine, so results are an upper bound for
+ * the hardware used. Run with {@code ./gradlew loadtest --args="..."}:
+ * <pre>
+ * --devices=50000        simulated devices
+ * --duration=300         seconds to run, including the ramp-up
+ * --interval=60          update interval of the devices in seconds
+ * --messages=3           messages per device
+ * --report=10            seconds per report line
+ * --keep-alive=false     reuse connections instead of one per poll like the firmware
+ * </pre>
+ * Any other {@code --name=value} argument is passed on to the application,
+ * e.g. {@code --esp32.rate-limit.max-concurrent=1024}.
+ */
+public final class FleetLoadTest {
+
+    private static final String USERNAME = "loadtest";
+    private static final int BATCH_SIZE = 1000;
+
+    private FleetLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "devices", "50000",
+                "duration", "300",
+                "interval", "60",
+                "messages", "3",
+                "report", "10",
+                "keep-alive", "false"));
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--app.default-user.username=" + USERNAME,
+                "--app.default-user.password=" + UUID.randomUUID()));
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 2 && options.containsKey(arg.substring(2, eq))) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                appArgs.add(arg);
+            }
+        }
+        int devices = Integer.parseInt(options.get("devices"));
+        int durationSeconds = Integer.parseInt(options.get("duration"));
+        int intervalSeconds = Integer.parseInt(options.get("interval"));
+        int messages = Integer.parseInt(options.get("messages"));
+        int reportSeconds = Integer.parseInt(options.get("report"));
+        boolean keepAlive = Boolean.parseBoolean(options.get("keep-alive"));
+
+        // Needed to send "Connection: close", as the firmware effectively does
+        System.setProperty("jdk.httpclient.allowRestrictedHeaders", "connection");
+
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(ESignageP32.class)
+                .run(appArgs.toArray(String[]::new))) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            URI baseUri = URI.create("http://localhost:" + port);
+
+            long provisionStart = System.nanoTime();
+            Map<Long, String> fleet = provision(app.getBean(JdbcTemplate.class), devices, intervalSeconds, messages);
+            System.out.printf("Provisioned %d devices with %d messages each in %d ms, server at %s%n",
+                    fleet.size(), messages, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - provisionStart),
+                    baseUri);
+            System.out.printf("Polling every %d s for %d s%s%n%n", intervalSeconds, durationSeconds,
+                    keepAlive ? " over kept-alive connections" : ", one connection per poll");
+
+            run(fleet, baseUri, intervalSeconds, durationSeconds, reportSeconds, keepAlive);
+        }
+    }
+
+    /**
+     * Polls with all devices until the duration has passed, reporting periodically.
+     */
+    private static void run(Map<Long, String> fleet, URI baseUri, int intervalSeconds,
+                            int durationSeconds, int reportSeconds, boolean keepAlive) throws InterruptedException {
+        FleetStats stats = new FleetStats();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        try (ExecutorService devices = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient http = HttpClient.newBuilder()
+                     .executor(devices)
+                     .connectTimeout(Duration.ofSeconds(10))
+                     .followRedirects(HttpClient.Redirect.NEVER)
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .build()) {
+            fleet.forEach((id, token) -> devices.execute(new SimulatedDevice(
+                    id, token, baseUri, intervalSeconds, http, stats, keepAlive, deadline)));
+
+            long elapsed = 0;
+            while (elapsed < durationSeconds) {
+                long period = Math.min(reportSeconds, durationSeconds - elapsed);
+                TimeUnit.NANOSECONDS.sleep(start + TimeUnit.SECONDS.toNanos(elapsed + period) - System.nanoTime());
+                elapsed += period;
+                stats.report(System.out, elapsed, period, elapsed - period >= intervalSeconds);
+            }
+            // Devices stop at the deadline; ones still sleeping are not waited for
+            devices.shutdownNow();
+        }
+        stats.summary(System.out);
+    }
+
+    /**
+     * Inserts the devices and their messages in JDBC batches.
+     *
+     * @return the tokens of the new devices by device ID
+     */
+    private static Map<Long, String> provision(JdbcTemplate jdbc, int devices, int intervalSeconds, int messages) {
+        Long ownerId = jdbc.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, USERNAME);
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < devices; i++) {
+            rows.add(new Object[]{"loadtest-" + i, ownerId, intervalSeconds, 10, UUID.randomUUID().toString()});
+            if (rows.size() == BATCH_SIZE || i == devices - 1) {
+                jdbc.batchUpdate("""
+                        INSERT INTO devices (name, user_id, update_interval_seconds, rotate_interval_seconds,
+                                             device_token, config_version, config_changed_at)
+                        VALUES (?, ?, ?, ?, ?, 0, CURRENT_TIMESTAMP)
+                        """, rows);
+                rows.clear();
+            }
+        }
+
+        Map<Long, String> fleet = new HashMap<>(devices * 2);
+        jdbc.query("SELECT id, device_token FROM devices WHERE user_id = ?",
+                (RowCallbackHandler) rs -> fleet.put(rs.getLong(1), rs.getString(2)),
+                ownerId);
+
+        for (Long deviceId : fleet.keySet()) {
+            for (int m = 0; m < messages; m++) {
+                rows.add(new Object[]{deviceId, "Message " + m + " of device " + deviceId, 1 + m % 3, m % 2 == 1});
+            }
+            if (rows.size() >= BATCH_SIZE) {
+                insertMessages(jdbc, rows);
+            }
+        }
+        insertMessages(jdbc, rows);
+        return fleet;
+    }
+
+    private static void insertMessages(JdbcTemplate jdbc, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO messages (device_id, text, font_size, scroll) VALUES (?, ?, ?, ?)", rows);
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.lorenz.esignagep32.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of all simulated polls.
+ * <p>
+ * Devices record into a lock-free HdrHistogram recorder; the reporter
+ * swaps out an interval histogram every report period and adds it to the
+ * run total once the ramp-up is over.
+ */
+class FleetStats {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder redirects = new LongAdder();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bodies = new LongAdder();
+
+    private Histogram interval;
+    private long reportedErrors;        // Errors up to the previous report
+    private long rampUpErrors;
+    private long totalErrors;
+    private long totalSeconds;
+
+    /**
+     * Records a completed exchange.
+     *
+     * @param status       the final HTTP status
+     * @param elapsedNanos time from sending the first request until the answer was handled
+     */
+    void status(int status, long elapsedNanos) {
+        recorder.recordValue(Math.min(elapsedNanos, MAX_LATENCY_NANOS));
+        outcomes.computeIfAbsent(Integer.toString(status), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records a poll that failed without an HTTP answer.
+     *
+     * @param e the failure, e.g. a refused connection or a timeout
+     */
+    void exception(Exception e) {
+        outcomes.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    void redirect() {
+        redirects.increment();
+    }
+
+    /**
+     * Records a parsed configuration body.
+     *
+     * @param count the number of messages it held
+     */
+    void messages(int count) {
+        bodies.increment();
+        messages.add(count);
+    }
+
+    /**
+     * Prints the polls since the previous report as one line.
+     *
+     * @param out         where to print
+     * @param elapsed     seconds since the start of the run
+     * @param seconds     length of the period
+     * @param steadyState whether the period counts towards the run total
+     */
+    synchronized void report(PrintStream out, long elapsed, long seconds, boolean steadyState) {
+        interval = recorder.getIntervalHistogram(interval);
+        long errors = errors();
+        long periodErrors = errors - reportedErrors;
+        reportedErrors = errors;
+        if (steadyState) {
+            total.add(interval);
+            totalSeconds += seconds;
+            totalErrors += periodErrors;
+        } else {
+            rampUpErrors += periodErrors;
+        }
+        out.printf("%5ds %s %8.1f req/s  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms  errors %d%n",
+                elapsed, steadyState ? " " : "*", (double) interval.getTotalCount() / seconds,
+                millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)),
+                millis(interval.getValueAtPercentile(99.9)), millis(interval.getMaxValue()), periodErrors);
+    }
+
+    /**
+     * Prints the steady-state summary of the run.
+     *
+     * @param out where to print
+     */
+    synchronized void summary(PrintStream out) {
+        out.println();
+        out.printf("Steady state: %d polls in %d s, %.1f req/s%n", total.getTotalCount(), totalSeconds,
+                totalSeconds == 0 ? 0.0 : (double) total.getTotalCount() / totalSeconds);
+        out.printf("Latency: p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                millis(total.getValueAtPercentile(99.9)), millis(total.getMaxValue()));
+        out.printf("Errors: %d, plus %d during ramp-up%n", totalErrors, rampUpErrors);
+        out.println("Outcomes of the whole run:");
+        new TreeMap<>(outcomes).forEach((outcome, count) -> out.printf("  %-24s %d%n", outcome, count.sum()));
+        out.printf("  %-24s %d%n", "redirects followed", redirects.sum());
+        long parsed = bodies.sum();
+        out.printf("Parsed %d configurations, %.1f messages on average%n",
+                parsed, parsed == 0 ? 0.0 : (double) messages.sum() / parsed);
+    }
+
+    /**
+     * Counts all outcomes other than 200 and 304.
+     */
+    private long errors() {
+        long errors = 0;
+        for (Map.Entry<String, LongAdder> entry : outcomes.entrySet()) {
+            if (!entry.getKey().equals("200") && !entry.getKey().equals("304")) {
+                errors += entry.getValue().sum();
+            }
+        }
+        return errors;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
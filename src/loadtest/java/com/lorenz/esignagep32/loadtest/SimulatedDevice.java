@@ -0,0 +1,135 @@
+package com.lorenz.esignagep32.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One simulated ESP32 polling its configuration the way {@code firmware.ino}
+ * does in {@code fetchRemoteConfig}.
+ * <p>
+ * Every poll sends the device token, the firmware version and the ETag of
+ * the configuration held, follows a single 301/302 like
+ * {@code fetchConfigFromLocation}, and parses a 200 body for the new
+ * intervals. The next poll waits for the server's X-Next-Poll-After-Ms
+ * hint, or the update interval if the answer carried none, counted from
+ * the end of the response.
+ * <p>
+ * Only plain HTTP is used; the firmware's HTTPS attempt needs a TLS
+ * terminating proxy in front of the server, which is out of scope here.
+ */
+class SimulatedDevice implements Runnable {
+
+    static final String FIRMWARE_VERSION = "loadtest";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final long id;
+    private final String token;
+    private final URI endpoint;
+    private final HttpClient http;
+    private final FleetStats stats;
+    private final boolean keepAlive;
+    private final long deadlineNanos;
+
+    private int updateIntervalSeconds;
+    private String etag;
+    private long nextPollDelay;     // From the last answer, 0 if none
+
+    SimulatedDevice(long id, String token, URI baseUri, int updateIntervalSeconds,
+                    HttpClient http, FleetStats stats, boolean keepAlive, long deadlineNanos) {
+        this.id = id;
+        this.token = token;
+        this.endpoint = baseUri.resolve("/api/config/" + id);
+        this.updateIntervalSeconds = updateIntervalSeconds;
+        this.http = http;
+        this.stats = stats;
+        this.keepAlive = keepAlive;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Devices power up spread over one interval
+            sleepMillis(ThreadLocalRandom.current().nextLong(updateIntervalSeconds * 1000L));
+            while (System.nanoTime() < deadlineNanos) {
+                fetchRemoteConfig();
+                sleepMillis(nextPollDelay > 0 ? nextPollDelay : updateIntervalSeconds * 1000L);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Polls once and records the outcome.
+     */
+    private void fetchRemoteConfig() throws InterruptedException {
+        nextPollDelay = 0;
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = get(endpoint);
+            int status = response.statusCode();
+            if (status == 301 || status == 302) {
+                stats.redirect();
+                String location = response.headers().firstValue("Location").orElse(null);
+                if (location == null) {
+                    stats.status(status, System.nanoTime() - start);
+                    return;
+                }
+                response = get(endpoint.resolve(location));
+                status = response.statusCode();
+            }
+            if (status == 200) {
+                readPollHint(response);
+                handleResponse(response);
+            } else if (status == 304) {
+                readPollHint(response);
+            }
+            stats.status(status, System.nanoTime() - start);
+        } catch (IOException e) {
+            stats.exception(e);
+        }
+    }
+
+    private HttpResponse<byte[]> get(URI uri) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(30))
+                .header("X-Device-Token", token)
+                .header("X-Firmware-Version", FIRMWARE_VERSION);
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (!keepAlive) {
+            // The firmware opens a new connection for every poll
+            request.header("Connection", "close");
+        }
+        return http.send(request.GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private void readPollHint(HttpResponse<?> response) {
+        response.headers().firstValue("X-Next-Poll-After-Ms")
+                .ifPresent(hint -> nextPollDelay = Long.parseLong(hint));
+    }
+
+    private void handleResponse(HttpResponse<byte[]> response) throws IOException {
+        JsonNode config = MAPPER.readTree(response.body());
+        updateIntervalSeconds = Math.max(1, config.path("updateIntervalSeconds").asInt(updateIntervalSeconds));
+        stats.messages(config.path("messages").size());
+        etag = response.headers().firstValue("ETag").orElse(null);
+    }
+
+    private static void sleepMillis(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
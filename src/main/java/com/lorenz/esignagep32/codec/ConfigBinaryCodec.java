@@ -0,0 +1,189 @@
+package com.lorenz.esignagep32.codec;
+
+import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.dto.MessageDto;
+import org.springframework.http.MediaType;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact length-prefixed binary encoding of {@link ConfigDto} for
+ * constrained devices.
+ * <p>
+ * The layout can be parsed in a single forward pass straight into the
+ * firmware's structures, without building a document tree. All integers
+ * are little-endian; strings are a u16 byte length followed by UTF-8.
+ * <pre>
+ * magic            3 bytes  "ESC"
+ * formatVersion    u8       1
+ * configVersion    u32
+ * deviceId         u32
+ * updateInterval   u32      seconds
+ * rotateInterval   u32      seconds
+ * wifiSsid         str
+ * wifiPassword     str
+ * ntpServer        str
+ * serverDomain     str
+ * deviceToken      str
+ * messageCount     u16
+ * messageCount x {
+ *   id             u32
+ *   fontSize       u8
+ *   flags          u8       bit 0 = scroll
+ *   text           str
+ * }
+ * </pre>
+ * {@link #decode(byte[])} is the reference decoder for this format.
+ */
+public final class ConfigBinaryCodec {
+
+    /**
+     * Media type selecting the binary representation via the Accept header.
+     */
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.esignagep32.config+binary";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private static final byte[] MAGIC = {'E', 'S', 'C'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int FLAG_SCROLL = 0x01;
+
+    private ConfigBinaryCodec() {
+    }
+
+    /**
+     * Encodes a configuration into the binary format.
+     *
+     * @param dto the configuration to encode
+     * @return the encoded bytes
+     * @throws IllegalArgumentException if a value does not fit the format
+     */
+    public static byte[] encode(ConfigDto dto) {
+        byte[][] strings = {
+                utf8(dto.getWifiSsid()),
+                utf8(dto.getWifiPassword()),
+                utf8(dto.getNtpServer()),
+                utf8(dto.getServerDomain()),
+                utf8(dto.getDeviceToken())
+        };
+        List<MessageDto> messages = dto.getMessages() == null ? List.of() : dto.getMessages();
+        byte[][] texts = new byte[messages.size()][];
+
+        // Compute the exact size first so the buffer is allocated once
+        int size = MAGIC.length + 1 + 4 * 4 + 2;
+        for (byte[] s : strings) {
+            size += 2 + s.length;
+        }
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = utf8(messages.get(i).getText());
+            size += 4 + 1 + 1 + 2 + texts[i].length;
+        }
+        if (messages.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many messages: " + messages.size());
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC);
+        buf.put((byte) FORMAT_VERSION);
+        putU32(buf, dto.getConfigVersion());
+        putU32(buf, dto.getDeviceId() == null ? 0 : dto.getDeviceId());
+        putU32(buf, dto.getUpdateIntervalSeconds());
+        putU32(buf, dto.getRotateIntervalSeconds());
+        for (byte[] s : strings) {
+            putString(buf, s);
+        }
+        buf.putShort((short) messages.size());
+        for (int i = 0; i < texts.length; i++) {
+            MessageDto m = messages.get(i);
+            putU32(buf, m.getId() == null ? 0 : m.getId());
+            buf.put((byte) checkRange(m.getFontSize(), 0xFF, "fontSize"));
+            buf.put((byte) (m.isScroll() ? FLAG_SCROLL : 0));
+            putString(buf, texts[i]);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Decodes the binary format back into a configuration.
+     *
+     * @param data the encoded bytes
+     * @return the decoded configuration
+     * @throws IllegalArgumentException if the data is malformed
+     */
+    public static ConfigDto decode(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            for (byte b : MAGIC) {
+                if (buf.get() != b) {
+                    throw new IllegalArgumentException("Not an encoded config");
+                }
+            }
+            int format = Byte.toUnsignedInt(buf.get());
+            if (format != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported format version: " + format);
+            }
+
+            ConfigDto dto = new ConfigDto();
+            dto.setConfigVersion(Integer.toUnsignedLong(buf.getInt()));
+            dto.setDeviceId(Integer.toUnsignedLong(buf.getInt()));
+            dto.setUpdateIntervalSeconds(buf.getInt());
+            dto.setRotateIntervalSeconds(buf.getInt());
+            dto.setWifiSsid(getString(buf));
+            dto.setWifiPassword(getString(buf));
+            dto.setNtpServer(getString(buf));
+            dto.setServerDomain(getString(buf));
+            dto.setDeviceToken(getString(buf));
+
+            int count = Short.toUnsignedInt(buf.getShort());
+            List<MessageDto> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                MessageDto m = new MessageDto();
+                m.setId(Integer.toUnsignedLong(buf.getInt()));
+                m.setFontSize(Byte.toUnsignedInt(buf.get()));
+                m.setScroll((buf.get() & FLAG_SCROLL) != 0);
+                m.setText(getString(buf));
+                messages.add(m);
+            }
+            dto.setMessages(messages);
+            if (buf.hasRemaining()) {
+                throw new IllegalArgumentException("Trailing bytes after config");
+            }
+            return dto;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated config", e);
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] bytes = s == null ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        checkRange(bytes.length, 0xFFFF, "string length");
+        return bytes;
+    }
+
+    private static void putU32(ByteBuffer buf, long value) {
+        buf.putInt((int) checkRange(value, 0xFFFFFFFFL, "u32 value"));
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = Short.toUnsignedInt(buf.getShort());
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long checkRange(long value, long max, String what) {
+        if (value < 0 || value > max) {
+            throw new IllegalArgumentException(what + " out of range: " + value);
+        }
+        return value;
+    }
+}
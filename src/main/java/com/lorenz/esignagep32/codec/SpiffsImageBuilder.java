@@ -0,0 +1,263 @@
+package com.lorenz.esignagep32.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds SPIFFS filesystem images holding a single file, byte-compatible
+ * with the images <code>mkspiffs</code> produces for the ESP32 Arduino core.
+ * <p>
+ * Mirrors the on-flash layout of the SPIFFS library as configured there:
+ * 16-bit object ids, one object lookup page per block with the magic and
+ * erase count in its last four bytes, 32-byte names and 4 bytes of meta data.
+ * The file is laid out exactly as <code>mkspiffs</code> writes it through
+ * the SPIFFS write cache, in chunks of one logical page, including the
+ * object index header that is moved to a new page after every chunk.
+ * <p>
+ * Only the leading blocks touched by the file have content; all further
+ * blocks are formatted but empty, so callers can format an image once and
+ * write the file into a copy of its leading blocks. All integers are
+ * little-endian.
+ */
+public final class SpiffsImageBuilder {
+
+    /**
+     * Image geometry used by the ESignageP32 partition table.
+     */
+    public static final int IMAGE_SIZE = 0x160000;
+    public static final int BLOCK_SIZE = 4096;
+    public static final int PAGE_SIZE = 256;
+
+    private static final int OBJ_ID_SIZE = 2;           // spiffs_obj_id
+    private static final int PAGE_HEADER_SIZE = 5;      // obj_id, span_ix, flags
+    private static final int NAME_LENGTH = 32;
+    private static final int META_LENGTH = 4;
+    // Header, alignment to 4, size, type, name, meta
+    private static final int INDEX_HEADER_SIZE = 8 + 4 + 1 + NAME_LENGTH + META_LENGTH;
+    private static final int INDEX_HEADER_SIZE_OFFSET = 8;
+    private static final int INDEX_HEADER_TYPE_OFFSET = 12;
+    private static final int INDEX_HEADER_NAME_OFFSET = 13;
+
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_FINAL = 1 << 1;
+    private static final int FLAG_INDEX = 1 << 2;
+    private static final int FLAG_IXDELE = 1 << 6;
+    private static final int FLAG_DELET = 1 << 7;
+    private static final int DATA_PAGE_FLAGS = 0xFF & ~(FLAG_FINAL | FLAG_USED);
+    private static final int INDEX_PAGE_FLAGS = 0xFF & ~(FLAG_FINAL | FLAG_INDEX | FLAG_USED);
+    private static final int DELETED_PAGE_FLAGS = 0xFF & ~(FLAG_DELET | FLAG_IXDELE);
+
+    private static final int OBJ_ID = 1;                // First id handed out on an empty filesystem
+    private static final int OBJ_ID_INDEX_FLAG = 0x8000;
+    private static final int OBJ_ID_DELETED = 0;
+    private static final int TYPE_FILE = 1;
+    private static final int MAGIC_BASE = 0x20140529;
+
+    private final int blockSize;
+    private final int pageSize;
+    private final int blockCount;
+    private final int pagesPerBlock;
+    private final int lookupPages;
+    private final int entriesPerBlock;  // Pages per block usable for objects
+    private final int dataPageSize;     // Payload bytes of a data page
+    private final int headerEntries;    // Data pages the index header can address
+
+    /**
+     * Creates a builder for the default ESignageP32 geometry.
+     */
+    public SpiffsImageBuilder() {
+        this(IMAGE_SIZE, BLOCK_SIZE, PAGE_SIZE);
+    }
+
+    /**
+     * Creates a builder for the given geometry, as passed to
+     * <code>mkspiffs -s -b -p</code>.
+     *
+     * @param imageSize size of the image in bytes
+     * @param blockSize size of an erase block in bytes
+     * @param pageSize  size of a logical page in bytes
+     * @throws IllegalArgumentException if the sizes do not divide evenly
+     */
+    public SpiffsImageBuilder(int imageSize, int blockSize, int pageSize) {
+        if (pageSize < 64 || blockSize % pageSize != 0 || imageSize % blockSize != 0) {
+            throw new IllegalArgumentException("Invalid SPIFFS geometry: size " + imageSize
+                    + ", block " + blockSize + ", page " + pageSize);
+        }
+        this.blockSize = blockSize;
+        this.pageSize = pageSize;
+        this.blockCount = imageSize / blockSize;
+        this.pagesPerBlock = blockSize / pageSize;
+        this.lookupPages = Math.max(1, pagesPerBlock * OBJ_ID_SIZE / pageSize);
+        this.entriesPerBlock = pagesPerBlock - lookupPages;
+        this.dataPageSize = pageSize - PAGE_HEADER_SIZE;
+        this.headerEntries = (pageSize - INDEX_HEADER_SIZE) / 2;
+    }
+
+    /**
+     * Returns the size of the images built.
+     *
+     * @return the image size in bytes
+     */
+    public int imageSize() {
+        return blockCount * blockSize;
+    }
+
+    /**
+     * Returns the size of an erase block.
+     *
+     * @return the block size in bytes
+     */
+    public int blockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns how many leading blocks a file of the given size occupies.
+     *
+     * @param length the file size in bytes
+     * @return the number of blocks from block 0 written by {@link #writeFile}
+     * @throws IllegalArgumentException if the file does not fit
+     */
+    public int blocksFor(int length) {
+        if (length > headerEntries * dataPageSize) {
+            throw new IllegalArgumentException("File too large for a single index page: " + length + " bytes");
+        }
+        int dataPages = ceilDiv(length, dataPageSize);
+        // Initial index header plus one moved copy per further write chunk
+        int chunks = Math.max(1, ceilDiv(length, pageSize));
+        int blocks = ceilDiv(dataPages + chunks, entriesPerBlock);
+        if (blocks > blockCount) {
+            throw new IllegalArgumentException("File does not fit the image: " + length + " bytes");
+        }
+        return blocks;
+    }
+
+    /**
+     * Formats consecutive erase blocks: erases them and writes the magic
+     * and an erase count of zero into their object lookup pages.
+     *
+     * @param buf        buffer holding whole blocks
+     * @param firstBlock index within the image of the first block in the buffer
+     */
+    public void format(byte[] buf, int firstBlock) {
+        Arrays.fill(buf, (byte) 0xFF);
+        for (int off = 0, bix = firstBlock; off < buf.length; off += blockSize, bix++) {
+            int lookupEnd = off + lookupPages * pageSize;
+            putShort(buf, lookupEnd - 2 * OBJ_ID_SIZE, MAGIC_BASE ^ pageSize ^ (blockCount - bix));
+            putShort(buf, lookupEnd - OBJ_ID_SIZE, 0);
+        }
+    }
+
+    /**
+     * Writes a file into freshly formatted leading blocks of an image.
+     *
+     * @param head    formatted buffer starting at block 0, at least
+     *                {@link #blocksFor} blocks long
+     * @param name    the file name including the leading slash
+     * @param content the file content
+     * @throws IllegalArgumentException if the name or file does not fit
+     */
+    public void writeFile(byte[] head, String name, byte[] content) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length >= NAME_LENGTH) {
+            throw new IllegalArgumentException("File name too long: " + name);
+        }
+        if (head.length < blocksFor(content.length) * blockSize) {
+            throw new IllegalArgumentException("Buffer too small for " + content.length + " bytes");
+        }
+
+        // Object index header as kept in memory by SPIFFS while writing
+        byte[] index = new byte[pageSize];
+        Arrays.fill(index, (byte) 0xFF);
+        putShort(index, 0, OBJ_ID | OBJ_ID_INDEX_FLAG);
+        putShort(index, 2, 0);
+        index[4] = (byte) INDEX_PAGE_FLAGS;
+        index[INDEX_HEADER_TYPE_OFFSET] = TYPE_FILE;
+        Arrays.fill(index, INDEX_HEADER_NAME_OFFSET, INDEX_HEADER_NAME_OFFSET + NAME_LENGTH, (byte) 0);
+        System.arraycopy(nameBytes, 0, index, INDEX_HEADER_NAME_OFFSET, nameBytes.length);
+
+        int[] cursor = {0};
+        int indexPage = allocate(head, cursor, OBJ_ID | OBJ_ID_INDEX_FLAG);
+        System.arraycopy(index, 0, head, pageAddress(indexPage), pageSize);
+
+        // mkspiffs writes through the SPIFFS cache, which flushes one page worth at a time
+        for (int start = 0; start < content.length; start += pageSize) {
+            int end = Math.min(start + pageSize, content.length);
+            for (int offset = start; offset < end; ) {
+                int span = offset / dataPageSize;
+                int pageOffset = offset % dataPageSize;
+                int toWrite = Math.min(end - offset, dataPageSize - pageOffset);
+                int dataPage;
+                if (pageOffset == 0) {
+                    dataPage = allocate(head, cursor, OBJ_ID);
+                    int addr = pageAddress(dataPage);
+                    putShort(head, addr, OBJ_ID);
+                    putShort(head, addr + 2, span);
+                    head[addr + 4] = (byte) DATA_PAGE_FLAGS;
+                    putShort(index, INDEX_HEADER_SIZE + span * 2, dataPage);
+                } else {
+                    // Fill up the partly written page of the previous chunk
+                    dataPage = getShort(index, INDEX_HEADER_SIZE + span * 2);
+                }
+                System.arraycopy(content, offset, head,
+                        pageAddress(dataPage) + PAGE_HEADER_SIZE + pageOffset, toWrite);
+                offset += toWrite;
+            }
+            putInt(index, INDEX_HEADER_SIZE_OFFSET, end);
+
+            if (start == 0) {
+                // First write updates the fresh index header in place
+                System.arraycopy(index, 0, head, pageAddress(indexPage), pageSize);
+            } else {
+                // Later writes move the index header and delete the old copy
+                int moved = allocate(head, cursor, OBJ_ID | OBJ_ID_INDEX_FLAG);
+                System.arraycopy(index, 0, head, pageAddress(moved), pageSize);
+                putShort(head, lookupAddress(indexPage), OBJ_ID_DELETED);
+                head[pageAddress(indexPage) + 4] = (byte) DELETED_PAGE_FLAGS;
+                indexPage = moved;
+            }
+        }
+    }
+
+    /**
+     * Takes the next free page in allocation order and registers it in the
+     * object lookup of its block.
+     */
+    private int allocate(byte[] head, int[] cursor, int objId) {
+        int entry = cursor[0]++;
+        int page = (entry / entriesPerBlock) * pagesPerBlock + lookupPages + entry % entriesPerBlock;
+        putShort(head, lookupAddress(page), objId);
+        return page;
+    }
+
+    /**
+     * Returns the address of the lookup entry describing the given page.
+     */
+    private int lookupAddress(int page) {
+        int block = page / pagesPerBlock;
+        int entry = page % pagesPerBlock - lookupPages;
+        return block * blockSize + entry * OBJ_ID_SIZE;
+    }
+
+    private int pageAddress(int page) {
+        return page * pageSize;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private static void putShort(byte[] buf, int off, int value) {
+        buf[off] = (byte) value;
+        buf[off + 1] = (byte) (value >>> 8);
+    }
+
+    private static int getShort(byte[] buf, int off) {
+        return (buf[off] & 0xFF) | (buf[off + 1] & 0xFF) << 8;
+    }
+
+    private static void putInt(byte[] buf, int off, int value) {
+        putShort(buf, off, value);
+        putShort(buf, off + 2, value >>> 16);
+    }
+}
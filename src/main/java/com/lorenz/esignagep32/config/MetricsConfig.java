@@ -0,0 +1,78 @@
+package com.lorenz.esignagep32.config;
+
+import com.lorenz.esignagep32.render.FrameCache;
+import com.lorenz.esignagep32.service.ConfigSnapshotCache;
+import com.lorenz.esignagep32.service.ConfigWatchHub;
+import com.lorenz.esignagep32.service.GroupPlaylistCache;
+import com.lorenz.esignagep32.service.MessageTimeline;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes the state of the in-memory caches and of waiting long-polls as
+ * meters.
+ * <p>
+ * The components only count; the meters read those counts when scraped,
+ * so the hot paths never touch the registry. Connection pool, JVM and
+ * HTTP server meters are bound by Spring Boot itself.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Binds hit and miss counters plus the hit ratio of the caches, and
+     * the number of long-polls currently held open and of scheduled
+     * messages still to change.
+     */
+    @Bean
+    public MeterBinder deviceApiMeters(ConfigSnapshotCache snapshotCache,
+                                       FrameCache frameCache,
+                                       GroupPlaylistCache groupCache,
+                                       ConfigWatchHub watchHub,
+                                       MessageTimeline timeline) {
+        return registry -> {
+            bindCache(registry, "snapshot", snapshotCache,
+                    ConfigSnapshotCache::hits, ConfigSnapshotCache::misses);
+            bindCache(registry, "frame", frameCache,
+                    FrameCache::hits, FrameCache::misses);
+            bindCache(registry, "group", groupCache,
+                    GroupPlaylistCache::hits, GroupPlaylistCache::misses);
+            Gauge.builder("esignage.cache.size", frameCache, FrameCache::size)
+                    .description("Distinct messages kept rendered")
+                    .tag("cache", "frame")
+                    .register(registry);
+            Gauge.builder("esignage.config.watches.active", watchHub, ConfigWatchHub::activeWatches)
+                    .description("Configuration long-polls currently waiting for a change")
+                    .register(registry);
+            Gauge.builder("esignage.schedule.messages", timeline, MessageTimeline::size)
+                    .description("Scheduled messages that will still appear or disappear")
+                    .register(registry);
+        };
+    }
+
+    private static <T> void bindCache(MeterRegistry registry, String name, T cache,
+                                      ToLongFunction<T> hits, ToLongFunction<T> misses) {
+        FunctionCounter.builder("esignage.cache.requests", cache, c -> hits.applyAsLong(c))
+                .description("Cache lookups by result")
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("esignage.cache.requests", cache, c -> misses.applyAsLong(c))
+                .description("Cache lookups by result")
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        Gauge.builder("esignage.cache.hit.ratio", cache, c -> {
+                    long h = hits.applyAsLong(c);
+                    long total = h + misses.applyAsLong(c);
+                    return total == 0 ? Double.NaN : (double) h / total;
+                })
+                .description("Share of cache lookups served from memory since startup")
+                .tag("cache", name)
+                .register(registry);
+    }
+}
@@ -0,0 +1,44 @@
+package com.lorenz.esignagep32.config;
+
+import com.lorenz.esignagep32.ratelimit.DeviceRateLimitFilter;
+import com.lorenz.esignagep32.ratelimit.StripedTokenBuckets;
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the rate limit of the device API in front of the Spring
+ * Security filter chain, so floods are rejected before any controller
+ * or configuration is involved.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    /**
+     * Applies {@link DeviceRateLimitFilter} to the device endpoints.
+     */
+    @Bean
+    public FilterRegistrationBean<DeviceRateLimitFilter> deviceRateLimitFilter(
+            DeviceTokenVerifier tokenVerifier,
+            @Value("${esp32.rate-limit.stripes:65536}") int stripes,
+            @Value("${esp32.rate-limit.device.rate-per-second:1}") double deviceRate,
+            @Value("${esp32.rate-limit.device.burst:10}") int deviceBurst,
+            @Value("${esp32.rate-limit.address.rate-per-second:50}") double addressRate,
+            @Value("${esp32.rate-limit.address.burst:500}") int addressBurst,
+            @Value("${esp32.rate-limit.max-concurrent:256}") int maxConcurrent) {
+
+        DeviceRateLimitFilter filter = new DeviceRateLimitFilter(
+                new StripedTokenBuckets(stripes, deviceRate, deviceBurst),
+                // Only failed authentications count against an address
+                new StripedTokenBuckets(stripes, addressRate, addressBurst),
+                tokenVerifier,
+                maxConcurrent);
+        FilterRegistrationBean<DeviceRateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/config/*", "/api/frames/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
@@ -0,0 +1,13 @@
+package com.lorenz.esignagep32.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables Spring's {@code @Scheduled} support for periodic background tasks
+ * such as keep-alive messages on event streams.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
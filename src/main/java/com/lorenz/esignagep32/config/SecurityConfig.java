@@ -1,23 +1,39 @@
 package com.lorenz.esignagep32.config;
 
 import com.lorenz.esignagep32.repository.UserRepository;
+import com.lorenz.esignagep32.security.DeviceAuthentication;
+import com.lorenz.esignagep32.security.DeviceTokenAuthenticationFilter;
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import jakarta.servlet.DispatcherType;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
 /**
  * Security configuration for ESignageP32 application.
  *
- * Sets up password encoding, user details service, and security filter chain.
+ * Sets up password encoding, user details service, and three security filter
+ * chains: a stateless one for the device API, a stateless one for the
+ * Actuator endpoints and one for browser users.
  */
 @Configuration
 public class SecurityConfig {
@@ -59,10 +75,81 @@ public class SecurityConfig {
     }
 
     /**
-     * Configures the security filter chain, including CSRF protection,
-     * authorization rules, form-based login, and logout handling.
+     * Configures the filter chain of the device API, which is matched first.
+     * <p>
+     * Devices authenticate every request with their token, so the chain is
+     * stateless and carries none of the browser machinery: no session, CSRF
+     * token, request cache, anonymous user or response headers for
+     * browsers. Unauthenticated requests receive 401 and methods other
+     * than GET 403, instead of a redirect.
+     * Asynchronous and error dispatches of already authorized requests,
+     * e.g. completed long-polls, are let through.
      */
     @Bean
+    @Order(1)
+    public SecurityFilterChain deviceFilterChain(HttpSecurity http, DeviceTokenVerifier tokenVerifier) throws Exception {
+        http
+                .securityMatcher("/api/config/**", "/api/frames/**")
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(AbstractHttpConfigurer::disable)
+                .anonymous(AbstractHttpConfigurer::disable)
+                .headers(AbstractHttpConfigurer::disable)
+                .logout(AbstractHttpConfigurer::disable)
+                .addFilterBefore(new DeviceTokenAuthenticationFilter(tokenVerifier), AuthorizationFilter.class)
+                // Plain status codes; the error page would redirect devices to the login form
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED))
+                        .accessDeniedHandler((request, response, e) ->
+                                response.setStatus(HttpStatus.FORBIDDEN.value())))
+                .authorizeHttpRequests(auth -> auth
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                        .requestMatchers(HttpMethod.GET).hasAuthority(DeviceAuthentication.ROLE_DEVICE)
+                        .anyRequest().denyAll()
+                );
+
+        return http.build();
+    }
+
+    /**
+     * Configures the filter chain of the Actuator endpoints.
+     * <p>
+     * Health stays public for load balancers and container probes. Metrics
+     * are scraped with HTTP Basic credentials of an admin user rather than a
+     * login form, without creating a session per scrape.
+     */
+    @Bean
+    @Order(2)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        // Plain status codes; the error page would redirect scrapers to the login form
+        AuthenticationEntryPoint challenge = (request, response, e) -> {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Basic realm=\"actuator\"");
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        };
+        http
+                .securityMatcher(EndpointRequest.toAnyEndpoint())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(AbstractHttpConfigurer::disable)
+                .httpBasic(basic -> basic.authenticationEntryPoint(challenge))
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(challenge)
+                        .accessDeniedHandler((request, response, e) ->
+                                response.setStatus(HttpStatus.FORBIDDEN.value())))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .anyRequest().hasRole("ADMIN")
+                );
+
+        return http.build();
+    }
+
+    /**
+     * Configures the security filter chain for browser users, including CSRF
+     * protection, authorization rules, form-based login, and logout handling.
+     */
+    @Bean
+    @Order(3)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 // Enable default CSRF protection
@@ -77,8 +164,7 @@ public class SecurityConfig {
                                 "/flash.html",
                                 "/js/flash.js",
                                 "/firmware/**",
-                                "/api/setup",
-                                "/api/config/**"
+                                "/api/setup"
                         ).permitAll()
                         // All other requests require authentication
                         .anyRequest().authenticated()
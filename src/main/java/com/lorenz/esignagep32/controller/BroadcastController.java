@@ -0,0 +1,57 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.dto.BroadcastDto;
+import com.lorenz.esignagep32.dto.BroadcastStatusDto;
+import com.lorenz.esignagep32.service.BroadcastService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * REST controller for adding a message to many devices at once.
+ * <p>
+ * Broadcasts run in the background; starting one answers 202 Accepted
+ * with the status resource to poll for progress.
+ */
+@RestController
+@RequestMapping("/api/broadcasts")
+@RequiredArgsConstructor
+public class BroadcastController {
+
+    private final BroadcastService broadcastService;
+
+    /**
+     * Starts a broadcast to the authenticated user's devices matching the search.
+     *
+     * @param request the message and the device filter
+     * @param user    Authenticated user's details
+     * @return the initial status with the location of the status resource
+     */
+    @PostMapping
+    public ResponseEntity<BroadcastStatusDto> start(@RequestBody BroadcastDto request,
+                                                    @AuthenticationPrincipal UserDetails user) {
+        BroadcastStatusDto status = broadcastService.start(user.getUsername(), request);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest()
+                        .path("/{id}")
+                        .buildAndExpand(status.getId())
+                        .toUri())
+                .body(status);
+    }
+
+    /**
+     * Returns the progress of a broadcast of the authenticated user.
+     *
+     * @param id   ID of the broadcast
+     * @param user Authenticated user's details
+     * @return the current status
+     */
+    @GetMapping("/{id}")
+    public BroadcastStatusDto status(@PathVariable String id,
+                                     @AuthenticationPrincipal UserDetails user) {
+        return broadcastService.status(user.getUsername(), id);
+    }
+}
@@ -0,0 +1,65 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.dto.BroadcastDto;
+import com.lorenz.esignagep32.dto.BroadcastStatusDto;
+import com.lorenz.esignagep32.service.BroadcastService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Web controller for the broadcast form and its progress page.
+ */
+@Controller
+@RequestMapping("/broadcasts")
+@RequiredArgsConstructor
+public class BroadcastWebController {
+
+    private final BroadcastService broadcastService;
+
+    /**
+     * Displays the broadcast form.
+     *
+     * @param model Spring Model to pass attributes to the view
+     * @return name of the broadcast view template
+     */
+    @GetMapping
+    public String showForm(Model model) {
+        model.addAttribute("broadcast", new BroadcastDto());
+        return "broadcast";
+    }
+
+    /**
+     * Starts a broadcast and redirects to its progress page.
+     *
+     * @param broadcast the message and the device filter from the form
+     * @param user      Authenticated user's details
+     * @return redirect to the progress page
+     */
+    @PostMapping
+    public String start(@ModelAttribute("broadcast") BroadcastDto broadcast,
+                        @AuthenticationPrincipal UserDetails user) {
+        BroadcastStatusDto status = broadcastService.start(user.getUsername(), broadcast);
+        return "redirect:/broadcasts/" + status.getId();
+    }
+
+    /**
+     * Shows the progress of a broadcast below an empty form for the next one.
+     *
+     * @param id    ID of the broadcast
+     * @param model Spring Model to pass attributes to the view
+     * @param user  Authenticated user's details
+     * @return name of the broadcast view template
+     */
+    @GetMapping("/{id}")
+    public String showProgress(@PathVariable String id,
+                               Model model,
+                               @AuthenticationPrincipal UserDetails user) {
+        model.addAttribute("status", broadcastService.status(user.getUsername(), id));
+        model.addAttribute("broadcast", new BroadcastDto());
+        return "broadcast";
+    }
+}
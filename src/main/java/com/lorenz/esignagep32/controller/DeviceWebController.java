@@ -1,18 +1,32 @@
 package com.lorenz.esignagep32.controller;
 
+import com.lorenz.esignagep32.dto.DevicePageDto;
+import com.lorenz.esignagep32.dto.DeviceSummaryDto;
 import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.dto.MessageScheduleDto;
 import com.lorenz.esignagep32.dto.SetupDto;
 import com.lorenz.esignagep32.model.Device;
+import com.lorenz.esignagep32.model.DisplayMessage;
+import com.lorenz.esignagep32.render.FrameCache;
 import com.lorenz.esignagep32.service.DeviceService;
+import com.lorenz.esignagep32.service.FleetEventHub;
+import com.lorenz.esignagep32.service.MessageTimeline;
+import com.lorenz.esignagep32.service.PresenceEngine;
 import com.lorenz.esignagep32.service.RegistrationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.DayOfWeek;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Controller for handling web requests related to device management.
@@ -24,24 +38,67 @@ public class DeviceWebController {
 
     private final DeviceService deviceService;            // Service for device CRUD operations
     private final RegistrationService registrationService; // Service to generate device setup configurations
+    private final FleetEventHub fleetEventHub;             // Fan-out of live device events
+    private final FrameCache frameCache;                   // Rasterized messages for previews
+    private final PresenceEngine presenceEngine;           // Online state of devices
+    private final MessageTimeline timeline;                // Zone message schedules refer to
 
     /**
-     * Displays a list of devices for the authenticated user.
+     * Displays one page of the devices of the authenticated user.
      *
+     * @param after ID of the last device of the previous page, absent for the first page
+     * @param q     text the device names must contain, absent for all devices
      * @param model Spring Model to pass attributes to the view
      * @param user  Authenticated user's details
      * @return view name for device list page
      */
     @GetMapping
-    public String listDevices(Model model,
+    public String listDevices(@RequestParam(required = false) Long after,
+                              @RequestParam(required = false) String q,
+                              Model model,
                               @AuthenticationPrincipal UserDetails user) {
-        model.addAttribute("devices",
-                deviceService.listDevices(user.getUsername()));
+        DevicePageDto page = deviceService.listDevicePage(user.getUsername(), after, q);
+        model.addAttribute("devices", page.getDevices());
+        model.addAttribute("nextAfterId", page.getNextAfterId());
+        model.addAttribute("firstPage", after == null);
+        model.addAttribute("q", q);
+        model.addAttribute("onlineIds", page.getDevices().stream()
+                .map(DeviceSummaryDto::getId)
+                .filter(presenceEngine::isOnline)
+                .collect(Collectors.toSet()));
         return "devices/list";
     }
 
     /**
-     * Shows details and messages for a specific device.
+     * Streams live events for devices of the authenticated user as
+     * Server-Sent Events.
+     *
+     * @param ids  IDs of the devices to follow, e.g. those of one list page; absent for all devices
+     * @param user Authenticated user's details
+     * @return emitter delivering the event stream
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter deviceEvents(@RequestParam(required = false) List<Long> ids,
+                                   @AuthenticationPrincipal UserDetails user) {
+        return fleetEventHub.subscribe(user.getUsername(), ids);
+    }
+
+    /**
+     * Streams live events for a single device as Server-Sent Events.
+     *
+     * @param id   ID of the device to follow
+     * @param user Authenticated user's details
+     * @return emitter delivering the event stream
+     */
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter singleDeviceEvents(@PathVariable Long id,
+                                         @AuthenticationPrincipal UserDetails user) {
+        return fleetEventHub.subscribe(user.getUsername(), List.of(id));
+    }
+
+    /**
+     * Shows details and messages for a specific device, including the
+     * messages it inherits from its groups.
      *
      * @param id    ID of the device to view
      * @param model Spring Model to pass attributes to the view
@@ -51,7 +108,10 @@ public class DeviceWebController {
     public String deviceDetail(@PathVariable Long id, Model model) {
         Device device = deviceService.findById(id);
         model.addAttribute("device", device);
+        model.addAttribute("configVersion", deviceService.servedConfigVersion(id));
         model.addAttribute("newMessage", new MessageDto()); // Prepare empty message form
+        model.addAttribute("scheduleZone", timeline.zone());
+        model.addAttribute("weekdays", DayOfWeek.values());
         return "devices/detail";
     }
 
@@ -76,17 +136,20 @@ public class DeviceWebController {
     /**
      * Adds a new message to be displayed on the device.
      *
-     * @param id  ID of the device
-     * @param msg Message DTO containing text, font size, and scroll flag
+     * @param id       ID of the device
+     * @param msg      Message DTO containing text, font size, and scroll flag
+     * @param schedule Optional validity period and weekly window of the message
      * @return redirect to the device detail page
      */
     @PostMapping("/{id}/messages")
     public String addMessage(@PathVariable Long id,
-                             @ModelAttribute("newMessage") MessageDto msg) {
+                             @ModelAttribute("newMessage") MessageDto msg,
+                             @ModelAttribute("schedule") MessageScheduleDto schedule) {
         deviceService.addMessage(id,
                 msg.getText(),
                 msg.getFontSize(),
-                msg.isScroll());
+                msg.isScroll(),
+                schedule);
         return "redirect:/devices/{id}";
     }
 
@@ -104,6 +167,26 @@ public class DeviceWebController {
         return "redirect:/devices/{deviceId}";
     }
 
+    /**
+     * Renders a message as the device's OLED display would show it.
+     *
+     * @param deviceId  ID of the device
+     * @param messageId ID of the message to preview
+     * @return ResponseEntity containing the PNG image
+     */
+    @GetMapping(path = "/{deviceId}/messages/{messageId}/preview.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> previewMessage(@PathVariable Long deviceId,
+                                                 @PathVariable Long messageId) {
+        DisplayMessage message = deviceService.findMessage(deviceId, messageId);
+        MessageDto dto = new MessageDto();
+        dto.setText(message.getText());
+        dto.setFontSize(message.getFontSize());
+        dto.setScroll(message.isScroll());
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(frameCache.toPng(frameCache.frame(dto)));
+    }
+
     /**
      * Deletes the specified device.
      *
@@ -116,6 +199,24 @@ public class DeviceWebController {
         return "redirect:/devices";
     }
 
+    /**
+     * Replaces the token of a device and downloads the setup JSON to
+     * provision it with again; the previous token stops working.
+     *
+     * @param id   ID of the device
+     * @param user Authenticated user's details
+     * @return ResponseEntity containing the setup JSON as an attachment
+     */
+    @PostMapping("/{id}/token")
+    public ResponseEntity<SetupDto> reissueToken(@PathVariable Long id,
+                                                 @AuthenticationPrincipal UserDetails user) {
+        SetupDto dto = registrationService.reissueSetupConfig(user.getUsername(), id);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"esignagep32-setup-" + id + ".json\"")
+                .body(dto);
+    }
+
     /**
      * Generates and downloads the initial configuration JSON for a device.
      *
@@ -1,45 +1,290 @@
 package com.lorenz.esignagep32.controller;
 
-import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.codec.ConfigBinaryCodec;
+import com.lorenz.esignagep32.dto.ConfigDeltaDto;
+import com.lorenz.esignagep32.jfr.ConfigServedEvent;
+import com.lorenz.esignagep32.service.ConfigChangeLog;
+import com.lorenz.esignagep32.service.ConfigSnapshot;
+import com.lorenz.esignagep32.service.ConfigSnapshotCache;
+import com.lorenz.esignagep32.service.ConfigWatchHub;
+import com.lorenz.esignagep32.service.DeviceApiMetrics;
 import com.lorenz.esignagep32.service.DeviceService;
+import com.lorenz.esignagep32.service.HeartbeatTracker;
+import com.lorenz.esignagep32.service.PollScheduler;
+import com.lorenz.esignagep32.service.PresenceEngine;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.List;
 
 /**
  * REST controller for serving device configuration to ESignageP32 devices.
+ * <p>
+ * Requests reach it only once the device filter chain has checked the
+ * X-Device-Token header against the device ID in the path.
  */
 @RestController
 @RequestMapping("/api/config")
 @RequiredArgsConstructor
 public class Esp32ConfigController {
 
+    private static final String FIRMWARE_VERSION_HEADER = "X-Firmware-Version";
+    private static final String NEXT_POLL_HEADER = "X-Next-Poll-After-Ms";
+
     private final DeviceService deviceService;
+    private final ConfigSnapshotCache snapshotCache;
+    private final ConfigWatchHub watchHub;
+    private final ConfigChangeLog changeLog;
+    private final HeartbeatTracker heartbeats;
+    private final PresenceEngine presenceEngine;
+    private final PollScheduler pollScheduler;
+    private final DeviceApiMetrics metrics;
+
+    @Value("${esp32.watch.timeout-seconds:30}")
+    private long watchTimeoutSeconds;   // How long a watch request is held open
 
     /**
-     * Provides the configuration JSON for a specific device if the provided
-     * device token matches. Returns 401 Unauthorized otherwise.
+     * Provides the configuration JSON for a specific device.
+     * <p>
+     * The payload comes pre-serialized from the snapshot cache, so a poll
+     * is a hash lookup plus one buffer write. Every response carries the
+     * configuration version and a hash of the global settings as ETag; if
+     * the device sends that ETag back in If-None-Match, 304 Not Modified is
+     * returned without a body.
+     * <p>
+     * Devices that list {@link ConfigBinaryCodec#MEDIA_TYPE_VALUE} in their
+     * Accept header receive the compact binary encoding instead of JSON.
+     * <p>
+     * Every authorized request is recorded as a heartbeat of the device
+     * and keeps it online. Responses, including 304, carry the delay until
+     * the device's next poll in the X-Next-Poll-After-Ms header. Latency,
+     * status and body size of each answer are recorded in {@link DeviceApiMetrics}
+     * and, while a flight recording asks for it, as a {@link ConfigServedEvent}.
      *
-     * @param deviceId ID of the device requesting its configuration
-     * @param token    Device token from the X-Device-Token header for validation
-     * @return ResponseEntity containing the configuration JSON as an attachment
+     * @param deviceId    ID of the device requesting its configuration
+     * @param ifNoneMatch ETag of the configuration the device already holds, if any
+     * @param accept      Accept header selecting JSON or binary
+     * @param firmware    Firmware version from the X-Firmware-Version header, if sent
+     * @param request     HTTP request, for the source address of the poll
+     * @return ResponseEntity containing the configuration as an attachment
      */
     @GetMapping("/{deviceId}")
-    public ResponseEntity<ConfigDto> downloadConfig(
+    public ResponseEntity<byte[]> downloadConfig(
+            @PathVariable Long deviceId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = FIRMWARE_VERSION_HEADER, required = false) String firmware,
+            HttpServletRequest request) {
+
+        long start = System.nanoTime();
+        ConfigServedEvent event = new ConfigServedEvent();
+        event.begin();
+
+        ConfigSnapshot snapshot = snapshotCache.get(deviceId);
+        boolean cacheHit = snapshot != null;
+        if (!cacheHit) {
+            snapshot = deviceService.loadConfigSnapshot(deviceId);
+        }
+        long nextPoll = recordPoll(snapshot, firmware, request, true);
+
+        boolean binary = acceptsBinary(accept);
+        String etag = binary ? snapshot.binaryEtag() : snapshot.etag();
+        if (ConfigSnapshot.isNotModified(ifNoneMatch, etag)) {
+            metrics.recordConfigPoll(start, true, binary, 0);
+            commit(event, deviceId, HttpStatus.NOT_MODIFIED, binary, 0, cacheHit);
+            return notModified(etag, nextPoll);
+        }
+        int bytes = binary ? snapshot.binary().length : snapshot.json().length;
+        metrics.recordConfigPoll(start, false, binary, bytes);
+        commit(event, deviceId, HttpStatus.OK, binary, bytes, cacheHit);
+        return configResponse(snapshot, binary, nextPoll);
+    }
+
+    /**
+     * Long-polls for a configuration newer than the given version.
+     * <p>
+     * Answers immediately if the device is behind. Otherwise the request is
+     * held open asynchronously, without occupying a container thread, until
+     * the configuration changes or the watch timeout passes; a timeout is
+     * answered with 304 Not Modified. The X-Next-Poll-After-Ms hint is
+     * planned when the answer is written, not when the watch began.
+     *
+     * @param deviceId ID of the device waiting for changes
+     * @param since    configuration version the device already holds
+     * @param accept   Accept header selecting JSON or binary
+     * @param firmware Firmware version from the X-Firmware-Version header, if sent
+     * @param request  HTTP request, for the source address of the poll
+     * @return deferred response with the new configuration
+     */
+    @GetMapping("/{deviceId}/watch")
+    public DeferredResult<ResponseEntity<byte[]>> watchConfig(
+            @PathVariable Long deviceId,
+            @RequestParam long since,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = FIRMWARE_VERSION_HEADER, required = false) String firmware,
+            HttpServletRequest request) {
+
+        boolean binary = acceptsBinary(accept);
+
+        DeferredResult<ResponseEntity<byte[]>> result =
+                new DeferredResult<>(Duration.ofSeconds(watchTimeoutSeconds).toMillis());
+
+        ConfigSnapshot snapshot = currentSnapshot(deviceId);
+        if (snapshot.version() > since) {
+            result.setResult(configResponse(snapshot, binary, recordPoll(snapshot, firmware, request, false)));
+            return result;
+        }
+
+        // Online at least until the watch ends; the poll hint is planned when it does
+        heartbeats.record(deviceId, firmware, request.getRemoteAddr());
+        presenceEngine.touch(deviceId, snapshot.ownerUsername(), Duration.ofSeconds(watchTimeoutSeconds)
+                .plusSeconds(snapshot.config().getUpdateIntervalSeconds()).toMillis());
+        Runnable cancel = watchHub.watch(deviceId, since, changed -> result.setResult(
+                changed == null ? ResponseEntity.notFound().build()
+                        : configResponse(changed, binary, planNextPoll(changed, false))));
+        result.onTimeout(() -> result.setResult(
+                notModified(binary ? snapshot.binaryEtag() : snapshot.etag(), planNextPoll(snapshot, false))));
+        result.onCompletion(cancel);
+        return result;
+    }
+
+    /**
+     * Provides only what changed since a configuration version the device
+     * already holds: added and removed messages and changed intervals.
+     * Returns 304 Not Modified if the device is up to date.
+     *
+     * @param deviceId ID of the device requesting the delta
+     * @param since    configuration version the device last applied
+     * @param firmware Firmware version from the X-Firmware-Version header, if sent
+     * @param request  HTTP request, for the source address of the poll
+     * @return ResponseEntity containing the delta JSON
+     */
+    @GetMapping("/{deviceId}/delta")
+    public ResponseEntity<ConfigDeltaDto> downloadDelta(
             @PathVariable Long deviceId,
-            @RequestHeader("X-Device-Token") String token) {
+            @RequestParam long since,
+            @RequestHeader(value = FIRMWARE_VERSION_HEADER, required = false) String firmware,
+            HttpServletRequest request) {
 
-        ConfigDto dto = deviceService.getConfigDto(deviceId);
-        if (!dto.getDeviceToken().equals(token)) {
-            // Unauthorized if token does not match
-            return ResponseEntity.status(401).build();
+        ConfigSnapshot snapshot = currentSnapshot(deviceId);
+        long nextPoll = recordPoll(snapshot, firmware, request, false);
+        if (snapshot.version() == since) {
+            return notModified(snapshot.etag(), nextPoll);
         }
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .header(NEXT_POLL_HEADER, Long.toString(nextPoll))
+                .body(changeLog.delta(snapshot, since));
+    }
 
+    /**
+     * Returns the cached snapshot of the device, loading it on a cache miss.
+     */
+    private ConfigSnapshot currentSnapshot(Long deviceId) {
+        ConfigSnapshot snapshot = snapshotCache.get(deviceId);
+        if (snapshot == null) {
+            // Cache miss: load from the database and serialize once
+            snapshot = deviceService.loadConfigSnapshot(deviceId);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Records an authorized poll for heartbeat and presence tracking and
+     * plans the next poll of the device.
+     *
+     * @param scheduled whether this is a poll on the device's schedule, which books a slot
+     * @return the delay in milliseconds until the device should poll again
+     */
+    private long recordPoll(ConfigSnapshot snapshot, String firmware, HttpServletRequest request,
+                            boolean scheduled) {
+        heartbeats.record(snapshot.deviceId(), firmware, request.getRemoteAddr());
+        return planNextPoll(snapshot, scheduled);
+    }
+
+    /**
+     * Plans the next poll of the device from now and keeps it online until
+     * then. Only scheduled polls book a slot of the {@link PollScheduler};
+     * watches and deltas get a suggestion from the same plan.
+     *
+     * @return the delay in milliseconds until the device should poll again
+     */
+    private long planNextPoll(ConfigSnapshot snapshot, boolean scheduled) {
+        int interval = snapshot.config().getUpdateIntervalSeconds();
+        long nextPoll = scheduled
+                ? pollScheduler.nextPollAfterMillis(snapshot.deviceId(), interval)
+                : pollScheduler.suggestNextPollAfterMillis(snapshot.deviceId(), interval);
+        presenceEngine.touch(snapshot.deviceId(), snapshot.ownerUsername(), nextPoll);
+        return nextPoll;
+    }
+
+    /**
+     * Emits the flight recorder event of a poll if a recording wants it.
+     */
+    private static void commit(ConfigServedEvent event, Long deviceId, HttpStatus status,
+                               boolean binary, int bytes, boolean cacheHit) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.deviceId = deviceId;
+            event.status = status.value();
+            event.format = binary ? "binary" : "json";
+            event.bytes = bytes;
+            event.cacheHit = cacheHit;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the 200 response writing the pre-encoded configuration.
+     */
+    private static ResponseEntity<byte[]> configResponse(ConfigSnapshot snapshot, boolean binary, long nextPoll) {
+        if (binary) {
+            return ResponseEntity.ok()
+                    .eTag(snapshot.binaryEtag())
+                    .header(NEXT_POLL_HEADER, Long.toString(nextPoll))
+                    .contentType(ConfigBinaryCodec.MEDIA_TYPE)
+                    .contentLength(snapshot.binary().length)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .body(snapshot.binary());
+        }
         // Return configuration JSON as downloadable attachment
         return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .header(NEXT_POLL_HEADER, Long.toString(nextPoll))
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(snapshot.json().length)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
                 .header(HttpHeaders.CONTENT_DISPOSITION,
                         "attachment; filename=\"esignagep32-config.json\"")
-                .body(dto);
+                .body(snapshot.json());
+    }
+
+    /**
+     * Checks whether the Accept header explicitly asks for the binary encoding.
+     */
+    private static boolean acceptsBinary(String accept) {
+        if (accept == null || !accept.contains(ConfigBinaryCodec.MEDIA_TYPE_VALUE)) {
+            return false;
+        }
+        List<MediaType> types = MediaType.parseMediaTypes(accept);
+        return types.stream().anyMatch(type -> type.equalsTypeAndSubtype(ConfigBinaryCodec.MEDIA_TYPE));
+    }
+
+    /**
+     * Builds the empty 304 response for an unchanged configuration.
+     */
+    private static <T> ResponseEntity<T> notModified(String etag, long nextPoll) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .header(NEXT_POLL_HEADER, Long.toString(nextPoll))
+                .build();
     }
 }
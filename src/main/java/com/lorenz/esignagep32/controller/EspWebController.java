@@ -2,18 +2,18 @@ package com.lorenz.esignagep32.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lorenz.esignagep32.dto.SetupDto;
+import com.lorenz.esignagep32.jfr.ConfigImageBuiltEvent;
+import com.lorenz.esignagep32.service.ConfigImageService;
+import com.lorenz.esignagep32.service.DeviceApiMetrics;
 import com.lorenz.esignagep32.service.RegistrationService;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.util.FileSystemUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.servlet.http.HttpServletResponse;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
 import java.security.Principal;
 
 /**
@@ -26,53 +26,55 @@ public class EspWebController {
 
     private final RegistrationService regService;
     private final ObjectMapper mapper;
+    private final ConfigImageService imageService;
+    private final DeviceApiMetrics metrics;
 
     public EspWebController(RegistrationService regService,
-                            ObjectMapper mapper) {
+                            ObjectMapper mapper,
+                            ConfigImageService imageService,
+                            DeviceApiMetrics metrics) {
         this.regService = regService;
         this.mapper = mapper;
+        this.imageService = imageService;
+        this.metrics = metrics;
     }
 
     /**
-     * Builds a temporary SPIFFS image containing the setup JSON
+     * Builds a SPIFFS image containing the setup JSON as /config.json
      * and streams it as a binary attachment.
+     * <p>
+     * Only the block holding the file is built per request; the rest of
+     * the image is written from a shared, pre-formatted template.
      *
      * @param resp HTTP response to write the binary payload
      * @param user Authenticated principal requesting the image
-     * @throws Exception if file operations or process execution fail
+     * @throws IOException if writing the response fails
      */
     @GetMapping(value = "/config.bin", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public void serveConfigBin(HttpServletResponse resp, Principal user) throws Exception {
-        // Create temporary directory for SPIFFS assembly
-        Path tmpDir = Files.createTempDirectory("spiffs");
-        Path fsDir = Files.createDirectory(tmpDir.resolve("fs"));
+    public void serveConfigBin(HttpServletResponse resp, Principal user) throws IOException {
+        long start = System.nanoTime();
+        ConfigImageBuiltEvent event = new ConfigImageBuiltEvent();
+        event.begin();
 
-        // Write setup JSON into the SPIFFS directory
+        // Serialize setup JSON for the device
         SetupDto cfg = regService.generateSetupConfig(user.getName());
-        Path jsonFile = fsDir.resolve("config.json");
-        Files.write(jsonFile, mapper.writeValueAsBytes(cfg));
-
-        // Generate SPIFFS image using external mkspiffs tool
-        Path imageFile = tmpDir.resolve("config.bin");
-        new ProcessBuilder(
-                "mkspiffs",
-                "-c", fsDir.toString(),
-                "-b", "4096",
-                "-p", "256",
-                "-s", "0x160000",
-                imageFile.toString()
-        )
-                .inheritIO()
-                .start()
-                .waitFor();
+        byte[] json = mapper.writeValueAsBytes(cfg);
 
         // Stream the generated binary back as an attachment
+        resp.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        resp.setContentLength(imageService.imageSize());
         resp.setHeader(HttpHeaders.CONTENT_DISPOSITION,
                 "attachment; filename=\"config.bin\"");
-        Files.copy(imageFile, resp.getOutputStream());
+        imageService.writeImage(json, resp.getOutputStream());
         resp.getOutputStream().flush();
+        metrics.recordConfigImage(start, imageService.imageSize());
 
-        // Clean up temporary files and directories
-        FileSystemUtils.deleteRecursively(tmpDir);
+        event.end();
+        if (event.shouldCommit()) {
+            event.deviceId = cfg.getDeviceId();
+            event.jsonBytes = json.length;
+            event.imageBytes = imageService.imageSize();
+            event.commit();
+        }
     }
 }
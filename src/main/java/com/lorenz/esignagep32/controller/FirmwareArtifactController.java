@@ -0,0 +1,182 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.service.ConfigSnapshot;
+import com.lorenz.esignagep32.service.FirmwareArtifactStore;
+import com.lorenz.esignagep32.service.FirmwareArtifactStore.Artifact;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Controller serving the firmware binaries and installer manifest used by
+ * the browser flashing page.
+ * <p>
+ * Binaries are available under content-addressed URLs that can be cached
+ * forever, and under their plain names for older manifests. Both support
+ * single byte ranges and conditional requests. Content is handed to the
+ * container as a file region where sendfile is available and written from
+ * a memory mapping otherwise, never copied onto the heap as a whole.
+ */
+@RestController
+@RequestMapping("/esp-web")
+@RequiredArgsConstructor
+public class FirmwareArtifactController {
+
+    // Request attributes of the Tomcat sendfile contract
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365))
+            .cachePublic().immutable().getHeaderValue();
+
+    private final FirmwareArtifactStore store;
+
+    /**
+     * Provides the installer manifest, whose binary paths point at the
+     * content-addressed URLs of the current firmware.
+     *
+     * @param ifNoneMatch ETag of the manifest the browser already holds, if any
+     * @return ResponseEntity containing the manifest JSON
+     */
+    @GetMapping("/manifest.json")
+    public ResponseEntity<byte[]> manifest(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        if (ConfigSnapshot.isNotModified(ifNoneMatch, store.manifestEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(store.manifestEtag())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(store.manifestEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(store.manifest());
+    }
+
+    /**
+     * Serves a firmware binary by content hash. The response never changes
+     * and may be cached indefinitely.
+     *
+     * @param sha256 hex SHA-256 of the requested content
+     * @param name   file name of the binary
+     * @param req    HTTP request carrying Range and conditional headers
+     * @param resp   HTTP response to write the binary to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping("/artifacts/{sha256}/{name:bootloader|partitions|firmware}.bin")
+    public void immutableArtifact(@PathVariable String sha256,
+                                  @PathVariable String name,
+                                  HttpServletRequest req,
+                                  HttpServletResponse resp) throws IOException {
+        Artifact artifact = store.find(name + ".bin");
+        if (artifact == null || !artifact.sha256().equals(sha256)) {
+            resp.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        resp.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        serve(artifact, req, resp);
+    }
+
+    /**
+     * Serves the current firmware binary under its plain name, to be
+     * revalidated by ETag.
+     *
+     * @param name file name of the binary
+     * @param req  HTTP request carrying Range and conditional headers
+     * @param resp HTTP response to write the binary to
+     * @throws IOException if writing the response fails
+     */
+    @GetMapping("/{name:bootloader|partitions|firmware}.bin")
+    public void artifact(@PathVariable String name,
+                         HttpServletRequest req,
+                         HttpServletResponse resp) throws IOException {
+        Artifact artifact = store.find(name + ".bin");
+        if (artifact == null) {
+            resp.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        resp.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        serve(artifact, req, resp);
+    }
+
+    /**
+     * Answers a request for an artifact with 304, 416, 206 or 200.
+     */
+    private static void serve(Artifact artifact, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String etag = artifact.etag();
+        resp.setHeader(HttpHeaders.ETAG, etag);
+        resp.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (ConfigSnapshot.isNotModified(req.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            resp.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long length = artifact.length();
+        long start = 0;
+        long end = length - 1;
+        String range = req.getHeader(HttpHeaders.RANGE);
+        String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // Malformed ranges are ignored and the full content is sent
+                ranges = List.of();
+            }
+            // Multiple ranges are rare for flashing tools; answer them with the full content
+            if (ranges.size() == 1) {
+                start = ranges.getFirst().getRangeStart(length);
+                end = ranges.getFirst().getRangeEnd(length);
+                if (start >= length || start > end) {
+                    resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    resp.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                resp.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        resp.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        resp.setContentLengthLong(end - start + 1);
+        if (HttpMethod.HEAD.matches(req.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT))) {
+            // Let the container send the file region from the kernel
+            req.setAttribute(SENDFILE_FILENAME, artifact.file().toString());
+            req.setAttribute(SENDFILE_START, start);
+            req.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        ByteBuffer region = artifact.data().slice((int) start, (int) (end - start + 1));
+        WritableByteChannel channel = Channels.newChannel(resp.getOutputStream());
+        while (region.hasRemaining()) {
+            channel.write(region);
+        }
+    }
+}
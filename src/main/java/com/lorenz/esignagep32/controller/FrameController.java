@@ -0,0 +1,63 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.render.FrameCache;
+import com.lorenz.esignagep32.service.ConfigSnapshot;
+import com.lorenz.esignagep32.service.ConfigSnapshotCache;
+import com.lorenz.esignagep32.service.DeviceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST controller serving pre-rendered display frames to ESignageP32 devices,
+ * so the firmware only copies pixels instead of laying out text.
+ */
+@RestController
+@RequestMapping("/api/frames")
+@RequiredArgsConstructor
+public class FrameController {
+
+    private final DeviceService deviceService;
+    private final ConfigSnapshotCache snapshotCache;
+    private final FrameCache frameCache;
+
+    /**
+     * Provides the rendered frames of all messages of a device. The device
+     * token has been checked by the device filter chain.
+     * <p>
+     * The ETag follows the configuration version, so a device holding the
+     * current frames receives 304 Not Modified without a body.
+     *
+     * @param deviceId    ID of the device requesting its frames
+     * @param ifNoneMatch ETag of the frames the device already holds, if any
+     * @return ResponseEntity containing the encoded frames, see {@link FrameCache#encode}
+     */
+    @GetMapping("/{deviceId}")
+    public ResponseEntity<byte[]> downloadFrames(
+            @PathVariable Long deviceId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        ConfigSnapshot snapshot = snapshotCache.get(deviceId);
+        if (snapshot == null) {
+            // Cache miss: load from the database and serialize once
+            snapshot = deviceService.loadConfigSnapshot(deviceId);
+        }
+
+        String etag = snapshot.framesEtag();
+        if (ConfigSnapshot.isNotModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .build();
+        }
+
+        byte[] frames = frameCache.payload(deviceId, snapshot.version(), snapshot.config().getMessages());
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.parseMediaType(FrameCache.MEDIA_TYPE_VALUE))
+                .contentLength(frames.length)
+                .body(frames);
+    }
+}
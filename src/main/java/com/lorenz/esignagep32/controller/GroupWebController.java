@@ -0,0 +1,175 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.model.DeviceGroup;
+import com.lorenz.esignagep32.model.GroupMessage;
+import com.lorenz.esignagep32.render.FrameCache;
+import com.lorenz.esignagep32.service.GroupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for managing device groups, their playlists and members.
+ */
+@Controller
+@RequestMapping("/groups")
+@RequiredArgsConstructor
+public class GroupWebController {
+
+    private final GroupService groupService;    // Service for group CRUD operations
+    private final FrameCache frameCache;        // Rasterized messages for previews
+
+    /**
+     * Displays the groups of the authenticated user.
+     *
+     * @param model Spring Model to pass attributes to the view
+     * @param user  Authenticated user's details
+     * @return view name for the group list page
+     */
+    @GetMapping
+    public String listGroups(Model model,
+                             @AuthenticationPrincipal UserDetails user) {
+        model.addAttribute("groups", groupService.listGroups(user.getUsername()));
+        return "groups/list";
+    }
+
+    /**
+     * Creates a new empty group.
+     *
+     * @param name Name of the new group
+     * @param user Authenticated user's details
+     * @return redirect to the detail page of the new group
+     */
+    @PostMapping
+    public String createGroup(@RequestParam String name,
+                              @AuthenticationPrincipal UserDetails user) {
+        DeviceGroup group = groupService.createGroup(user.getUsername(), name);
+        return "redirect:/groups/" + group.getId();
+    }
+
+    /**
+     * Shows the playlist and the members of a group.
+     *
+     * @param id    ID of the group to view
+     * @param model Spring Model to pass attributes to the view
+     * @param user  Authenticated user's details
+     * @return view name for the group detail page
+     */
+    @GetMapping("/{id}")
+    public String groupDetail(@PathVariable Long id,
+                              Model model,
+                              @AuthenticationPrincipal UserDetails user) {
+        model.addAttribute("group", groupService.findById(id, user.getUsername()));
+        model.addAttribute("newMessage", new MessageDto()); // Prepare empty message form
+        return "groups/detail";
+    }
+
+    /**
+     * Appends a message to the group playlist.
+     *
+     * @param id   ID of the group
+     * @param msg  Message DTO containing text, font size, and scroll flag
+     * @param user Authenticated user's details
+     * @return redirect to the group detail page
+     */
+    @PostMapping("/{id}/messages")
+    public String addMessage(@PathVariable Long id,
+                             @ModelAttribute("newMessage") MessageDto msg,
+                             @AuthenticationPrincipal UserDetails user) {
+        groupService.addMessage(id, user.getUsername(),
+                msg.getText(),
+                msg.getFontSize(),
+                msg.isScroll());
+        return "redirect:/groups/{id}";
+    }
+
+    /**
+     * Deletes a message from the group playlist.
+     *
+     * @param groupId   ID of the group
+     * @param messageId ID of the message to delete
+     * @param user      Authenticated user's details
+     * @return redirect to the group detail page
+     */
+    @PostMapping("/{groupId}/messages/{messageId}/delete")
+    public String deleteMessage(@PathVariable Long groupId,
+                                @PathVariable Long messageId,
+                                @AuthenticationPrincipal UserDetails user) {
+        groupService.removeMessage(groupId, user.getUsername(), messageId);
+        return "redirect:/groups/{groupId}";
+    }
+
+    /**
+     * Renders a group message as the OLED displays of the members show it.
+     *
+     * @param groupId   ID of the group
+     * @param messageId ID of the message to preview
+     * @param user      Authenticated user's details
+     * @return ResponseEntity containing the PNG image
+     */
+    @GetMapping(path = "/{groupId}/messages/{messageId}/preview.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> previewMessage(@PathVariable Long groupId,
+                                                 @PathVariable Long messageId,
+                                                 @AuthenticationPrincipal UserDetails user) {
+        GroupMessage message = groupService.findMessage(groupId, user.getUsername(), messageId);
+        MessageDto dto = new MessageDto();
+        dto.setText(message.getText());
+        dto.setFontSize(message.getFontSize());
+        dto.setScroll(message.isScroll());
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_PNG)
+                .body(frameCache.toPng(frameCache.frame(dto)));
+    }
+
+    /**
+     * Adds all devices whose names contain the search text to the group.
+     *
+     * @param id     ID of the group
+     * @param search Text the device names must contain, empty for all devices
+     * @param user   Authenticated user's details
+     * @return redirect to the group detail page
+     */
+    @PostMapping("/{id}/members")
+    public String addMembers(@PathVariable Long id,
+                             @RequestParam(required = false) String search,
+                             @AuthenticationPrincipal UserDetails user) {
+        groupService.addMembers(id, user.getUsername(), search);
+        return "redirect:/groups/{id}";
+    }
+
+    /**
+     * Removes a device from the group.
+     *
+     * @param groupId  ID of the group
+     * @param deviceId ID of the member device
+     * @param user     Authenticated user's details
+     * @return redirect to the group detail page
+     */
+    @PostMapping("/{groupId}/members/{deviceId}/delete")
+    public String removeMember(@PathVariable Long groupId,
+                               @PathVariable Long deviceId,
+                               @AuthenticationPrincipal UserDetails user) {
+        groupService.removeMember(groupId, user.getUsername(), deviceId);
+        return "redirect:/groups/{groupId}";
+    }
+
+    /**
+     * Deletes the group; its members keep their own messages.
+     *
+     * @param id   ID of the group to delete
+     * @param user Authenticated user's details
+     * @return redirect to the group list page
+     */
+    @PostMapping("/{id}/delete")
+    public String deleteGroup(@PathVariable Long id,
+                              @AuthenticationPrincipal UserDetails user) {
+        groupService.deleteGroup(id, user.getUsername());
+        return "redirect:/groups";
+    }
+}
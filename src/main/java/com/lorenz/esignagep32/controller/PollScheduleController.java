@@ -0,0 +1,31 @@
+package com.lorenz.esignagep32.controller;
+
+import com.lorenz.esignagep32.dto.PollScheduleStatsDto;
+import com.lorenz.esignagep32.service.PollScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing how evenly device polls are spread over time.
+ * <p>
+ * Available to authenticated users only.
+ */
+@RestController
+@RequestMapping("/api/poll-schedule")
+@RequiredArgsConstructor
+public class PollScheduleController {
+
+    private final PollScheduler pollScheduler;
+
+    /**
+     * Returns per-second statistics of recent and planned device polls.
+     *
+     * @return the flatness statistics of the poll rate
+     */
+    @GetMapping
+    public PollScheduleStatsDto getStats() {
+        return pollScheduler.stats();
+    }
+}
@@ -0,0 +1,29 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.Data;
+
+/**
+ * Data transfer object requesting a message to be added to many devices at once.
+ */
+@Data
+public class BroadcastDto {
+    /**
+     * Text the device names must contain, case-insensitively; null or blank targets all devices.
+     */
+    private String search;
+
+    /**
+     * The text content of the message to display.
+     */
+    private String text;
+
+    /**
+     * The font size to use when rendering the message.
+     */
+    private int fontSize = 1;
+
+    /**
+     * Whether the message should scroll on the display.
+     */
+    private boolean scroll;
+}
@@ -0,0 +1,48 @@
+package com.lorenz.esignagep32.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data transfer object describing the progress of a broadcast.
+ * <p>
+ * Returned by the broadcast API and sent as the data of {@code broadcast}
+ * events on the owner's fleet event stream after every committed batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BroadcastStatusDto {
+    /**
+     * The ID of the broadcast.
+     */
+    private String id;
+
+    /**
+     * Number of devices matched when the broadcast started.
+     */
+    private int total;
+
+    /**
+     * Number of devices processed so far, including skipped ones.
+     */
+    private int processed;
+
+    /**
+     * Number of devices that received the message.
+     */
+    private int delivered;
+
+    /**
+     * Whether all batches have run.
+     */
+    private boolean finished;
+
+    /**
+     * Why the broadcast stopped early, if it did.
+     */
+    private String error;
+}
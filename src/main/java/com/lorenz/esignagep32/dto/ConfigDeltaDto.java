@@ -0,0 +1,34 @@
+package com.lorenz.esignagep32.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Data transfer object describing how a device gets from a configuration
+ * version it already holds to the current one.
+ * <p>
+ * A device removes the listed message IDs, appends the added messages and
+ * applies any interval that is present. If {@code reset} is set, the
+ * change could not be reconstructed and the device replaces its message
+ * list with {@code added}.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ConfigDeltaDto {
+    // Version range covered by this delta
+    private long fromVersion;
+    private long toVersion;
+
+    // Whether the device must drop its messages before applying the delta
+    private boolean reset;
+
+    // Timing settings, only present if they changed
+    private Integer updateIntervalSeconds;
+    private Integer rotateIntervalSeconds;
+
+    // Message changes in display order
+    private List<MessageDto> added;
+    private List<Long> removed;
+}
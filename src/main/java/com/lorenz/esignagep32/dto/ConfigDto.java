@@ -22,6 +22,9 @@ public class ConfigDto {
     private Long deviceId;
     private String deviceToken;
 
+    // Version of this configuration, also sent as the ETag
+    private long configVersion;
+
     // Timing settings for device operations
     private int updateIntervalSeconds;
     private int rotateIntervalSeconds;
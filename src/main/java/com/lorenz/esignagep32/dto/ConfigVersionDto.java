@@ -0,0 +1,35 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Data transfer object with the parts of a device's configuration version.
+ */
+@Data
+@AllArgsConstructor
+public class ConfigVersionDto {
+    /**
+     * The ID of the device.
+     */
+    private Long deviceId;
+
+    /**
+     * The version of the device's own settings and messages.
+     */
+    private long deviceVersion;
+
+    /**
+     * The sum of the playlist versions of all groups of the device.
+     */
+    private long groupVersions;
+
+    /**
+     * Returns the version served to the device.
+     *
+     * @return the device version plus the group versions
+     */
+    public long getVersion() {
+        return deviceVersion + groupVersions;
+    }
+}
@@ -0,0 +1,27 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Data transfer object with one page of a user's device list.
+ * <p>
+ * Pages are addressed by the last device ID of the previous page rather
+ * than an offset, so every page costs the same however deep it is and
+ * devices added or deleted meanwhile do not shift rows between pages.
+ */
+@Data
+@AllArgsConstructor
+public class DevicePageDto {
+    /**
+     * The devices of this page, ordered by ID.
+     */
+    private List<DeviceSummaryDto> devices;
+
+    /**
+     * The ID to continue after for the next page, or null on the last page.
+     */
+    private Long nextAfterId;
+}
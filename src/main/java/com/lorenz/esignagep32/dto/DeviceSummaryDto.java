@@ -0,0 +1,30 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Data transfer object with one row of the device list.
+ * <p>
+ * Selected directly by a constructor expression, so listing devices never
+ * loads their entities, owners or message collections.
+ */
+@Data
+@AllArgsConstructor
+public class DeviceSummaryDto {
+    private Long id;
+    private String name;
+    private int updateIntervalSeconds;
+    private int rotateIntervalSeconds;
+
+    // Served version: the device's own plus those of its groups
+    private long configVersion;
+
+    // Counted by the database instead of initializing the messages collection
+    private long messageCount;
+
+    // Null for devices not changed since the column was introduced
+    private Instant configChangedAt;
+}
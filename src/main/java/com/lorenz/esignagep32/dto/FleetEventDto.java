@@ -0,0 +1,33 @@
+package com.lorenz.esignagep32.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Data transfer object describing a change to one device of a user's fleet.
+ * <p>
+ * Sent as the data of Server-Sent Events on the fleet channel;
+ * fields that do not apply to an event are omitted.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FleetEventDto {
+    /**
+     * The ID of the affected device.
+     */
+    private Long deviceId;
+
+    /**
+     * The configuration version of the device after the change.
+     */
+    private Long configVersion;
+
+    /**
+     * Whether the device is online, for presence events.
+     */
+    private Boolean online;
+}
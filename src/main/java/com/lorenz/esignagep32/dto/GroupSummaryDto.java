@@ -0,0 +1,19 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Data transfer object with one row of the group list.
+ */
+@Data
+@AllArgsConstructor
+public class GroupSummaryDto {
+    private Long id;
+    private String name;
+    private long configVersion;
+
+    // Counted by the database instead of initializing the collections
+    private long memberCount;
+    private long messageCount;
+}
@@ -9,6 +9,11 @@ import lombok.Data;
  */
 @Data
 public class MessageDto {
+    /**
+     * The ID of the message, used to address it in delta updates.
+     */
+    private Long id;
+
     /**
      * The text content of the message to display.
      */
@@ -0,0 +1,34 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Data transfer object for the schedule fields of the new message form.
+ * <p>
+ * Dates and times are local to the schedule zone; empty fields do not
+ * restrict when the message is shown.
+ */
+@Data
+public class MessageScheduleDto {
+    @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+    private LocalDateTime validFrom;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm")
+    private LocalDateTime validUntil;
+
+    // No day selected means every day
+    private Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+
+    @DateTimeFormat(pattern = "HH:mm")
+    private LocalTime dailyStart;
+
+    @DateTimeFormat(pattern = "HH:mm")
+    private LocalTime dailyEnd;
+}
@@ -0,0 +1,34 @@
+package com.lorenz.esignagep32.dto;
+
+import lombok.Data;
+
+/**
+ * Data transfer object describing how evenly device polls arrive.
+ * <p>
+ * Rates are per second over the last completed seconds of the window. A
+ * coefficient of variation near 0 and a peak-to-mean ratio near 1 mean a
+ * flat request rate; synchronized polls show up as large values of both.
+ */
+@Data
+public class PollScheduleStatsDto {
+    // Completed seconds covered and the current per-second budget of the scheduler
+    private int windowSeconds;
+    private int slotBudget;
+
+    // Polls per second the fleet makes at its configured intervals, which the budget follows
+    private double fleetRatePerSecond;
+
+    // Polls received within the window
+    private long polls;
+    private double meanPerSecond;
+    private long maxPerSecond;
+    private double stdDevPerSecond;
+
+    // Flatness of the received rate
+    private double coefficientOfVariation;
+    private double peakToMean;
+
+    // Polls already planned for the next window
+    private long plannedNextWindow;
+    private long plannedMaxPerSecond;
+}
@@ -0,0 +1,24 @@
+package com.lorenz.esignagep32.dto;
+
+import com.lorenz.esignagep32.model.MessageSchedule;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Data transfer object with what the activation timeline needs to know
+ * about one scheduled message.
+ */
+@Data
+@AllArgsConstructor
+public class ScheduledMessageDto {
+    private Long messageId;
+    private Long deviceId;
+    private String ownerUsername;
+
+    // Last version change of the device; boundaries passed since then were never announced
+    private Instant configChangedAt;
+
+    private MessageSchedule schedule;
+}
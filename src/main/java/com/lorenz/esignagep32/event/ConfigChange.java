@@ -0,0 +1,43 @@
+package com.lorenz.esignagep32.event;
+
+/**
+ * Describes what a single configuration version changed on a device.
+ *
+ * @param type      the kind of change
+ * @param messageId the ID of the affected message, null for other changes
+ */
+public record ConfigChange(Type type, Long messageId) {
+
+    /**
+     * Kinds of configuration changes tracked for delta updates.
+     */
+    public enum Type {
+        MESSAGE_ADDED,
+        MESSAGE_REMOVED,
+        SETTINGS_CHANGED,
+        // Group memberships changed; inherited messages cannot be diffed
+        GROUPS_CHANGED,
+        // The device token was replaced; only reaches a re-provisioned device
+        TOKEN_REISSUED
+    }
+
+    public static ConfigChange messageAdded(Long messageId) {
+        return new ConfigChange(Type.MESSAGE_ADDED, messageId);
+    }
+
+    public static ConfigChange messageRemoved(Long messageId) {
+        return new ConfigChange(Type.MESSAGE_REMOVED, messageId);
+    }
+
+    public static ConfigChange settingsChanged() {
+        return new ConfigChange(Type.SETTINGS_CHANGED, null);
+    }
+
+    public static ConfigChange groupsChanged() {
+        return new ConfigChange(Type.GROUPS_CHANGED, null);
+    }
+
+    public static ConfigChange tokenReissued() {
+        return new ConfigChange(Type.TOKEN_REISSUED, null);
+    }
+}
@@ -0,0 +1,22 @@
+package com.lorenz.esignagep32.event;
+
+/**
+ * Application event published whenever the configuration of a device changes.
+ * <p>
+ * Listeners receive it after the surrounding transaction has committed,
+ * so the new version is visible to any subsequent database read.
+ *
+ * @param deviceId      the ID of the affected device
+ * @param ownerUsername the username of the device owner
+ * @param version       the configuration version served after the change, including group versions
+ * @param deviceVersion the version of the device's own configuration after the change
+ * @param deleted       whether the device itself has been deleted
+ * @param change        what the new version changed, null if the device was deleted
+ */
+public record ConfigChangedEvent(Long deviceId,
+                                 String ownerUsername,
+                                 long version,
+                                 long deviceVersion,
+                                 boolean deleted,
+                                 ConfigChange change) {
+}
@@ -0,0 +1,14 @@
+package com.lorenz.esignagep32.event;
+
+/**
+ * Application event published when a device has been created.
+ * <p>
+ * Listeners receive it after the surrounding transaction has committed,
+ * so the device and its token are visible to any subsequent database read.
+ *
+ * @param deviceId      the ID of the new device
+ * @param ownerUsername the username of the device owner
+ */
+public record DeviceCreatedEvent(Long deviceId,
+                                 String ownerUsername) {
+}
@@ -0,0 +1,20 @@
+package com.lorenz.esignagep32.event;
+
+/**
+ * Application event published whenever the playlist of a device group changes.
+ * <p>
+ * Carries no member devices: listeners only note the new group version,
+ * and device configurations built from an older one are rebuilt when
+ * they are next requested. Membership changes are changes of the devices
+ * themselves and announced as {@link ConfigChangedEvent}s.
+ *
+ * @param groupId       the ID of the affected group
+ * @param ownerUsername the username of the group owner
+ * @param version       the playlist version after the change
+ * @param deleted       whether the group itself has been deleted
+ */
+public record GroupChangedEvent(Long groupId,
+                                String ownerUsername,
+                                long version,
+                                boolean deleted) {
+}
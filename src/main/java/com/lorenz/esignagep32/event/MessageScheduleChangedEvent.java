@@ -0,0 +1,21 @@
+package com.lorenz.esignagep32.event;
+
+import com.lorenz.esignagep32.model.MessageSchedule;
+
+/**
+ * Application event published when a scheduled display message has been
+ * added or a display message has been removed.
+ * <p>
+ * Listeners receive it after the surrounding transaction has committed,
+ * so nothing is scheduled for a message that was rolled back.
+ *
+ * @param messageId     the ID of the affected message
+ * @param deviceId      the ID of the device showing it
+ * @param ownerUsername the username of the device owner
+ * @param schedule      the schedule of the added message, null if the message was removed
+ */
+public record MessageScheduleChangedEvent(Long messageId,
+                                          Long deviceId,
+                                          String ownerUsername,
+                                          MessageSchedule schedule) {
+}
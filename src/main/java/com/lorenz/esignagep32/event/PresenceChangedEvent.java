@@ -0,0 +1,13 @@
+package com.lorenz.esignagep32.event;
+
+/**
+ * Application event published when a device comes online or goes offline.
+ *
+ * @param deviceId      the ID of the affected device
+ * @param ownerUsername the username of the device owner
+ * @param online        whether the device is now online
+ */
+public record PresenceChangedEvent(Long deviceId,
+                                   String ownerUsername,
+                                   boolean online) {
+}
@@ -0,0 +1,32 @@
+package com.lorenz.esignagep32.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning the generation and transfer of one
+ * config.bin SPIFFS image, including the setup it contains.
+ */
+@Name("com.lorenz.esignagep32.ConfigImageBuilt")
+@Label("Config Image Built")
+@Category({"ESignageP32", "Provisioning"})
+@Enabled(false)
+@StackTrace(false)
+public class ConfigImageBuiltEvent extends Event {
+
+    @Label("Device ID")
+    public long deviceId;
+
+    @Label("Setup JSON Size")
+    @DataAmount
+    public long jsonBytes;
+
+    @Label("Image Size")
+    @DataAmount
+    public long imageBytes;
+}
@@ -0,0 +1,40 @@
+package com.lorenz.esignagep32.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning the load of a device configuration from
+ * the database and its encoding into a snapshot.
+ */
+@Name("com.lorenz.esignagep32.ConfigLoaded")
+@Label("Config Loaded")
+@Category({"ESignageP32", "Persistence"})
+@Description("Device configuration loaded from the database after a snapshot cache miss")
+@Enabled(false)
+@StackTrace(false)
+public class ConfigLoadedEvent extends Event {
+
+    @Label("Device ID")
+    public long deviceId;
+
+    @Label("Version")
+    public long version;
+
+    @Label("Messages")
+    public int messages;
+
+    @Label("JSON Size")
+    @DataAmount
+    public long jsonBytes;
+
+    @Label("Binary Size")
+    @DataAmount
+    public long binaryBytes;
+}
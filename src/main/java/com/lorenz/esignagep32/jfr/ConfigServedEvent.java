@@ -0,0 +1,46 @@
+package com.lorenz.esignagep32.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one configuration poll of a device, from
+ * the controller entry until its response has been built.
+ * <p>
+ * Like all events of this package it is disabled unless a recording
+ * enables it, e.g. with {@code jfr/esignagep32.jfc}; a disabled event
+ * costs the poll nothing beyond its allocation, which the JIT removes.
+ */
+@Name("com.lorenz.esignagep32.ConfigServed")
+@Label("Config Served")
+@Category({"ESignageP32", "Device API"})
+@Description("Configuration poll answered by the server")
+@Enabled(false)
+@StackTrace(false)
+public class ConfigServedEvent extends Event {
+
+    @Label("Device ID")
+    public long deviceId;
+
+    @Label("Status")
+    @Description("HTTP status of the answer, 200 or 304")
+    public int status;
+
+    @Label("Format")
+    @Description("Encoding requested by the device, json or binary")
+    public String format;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Cache Hit")
+    @Description("Whether the snapshot was served from memory without a database load")
+    public boolean cacheHit;
+}
@@ -0,0 +1,33 @@
+package com.lorenz.esignagep32.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one bulk write of buffered device
+ * heartbeats to the database.
+ */
+@Name("com.lorenz.esignagep32.HeartbeatFlush")
+@Label("Heartbeat Flush")
+@Category({"ESignageP32", "Persistence"})
+@Description("Buffered device polls written in JDBC batches")
+@Enabled(false)
+@StackTrace(false)
+public class HeartbeatFlushEvent extends Event {
+
+    @Label("Devices")
+    @Description("Devices with new polls since the previous flush")
+    public int devices;
+
+    @Label("Batches")
+    public int batches;
+
+    @Label("Failed Devices")
+    @Description("Devices whose polls are kept for the next flush after a failed batch")
+    public int failedDevices;
+}
@@ -0,0 +1,23 @@
+package com.lorenz.esignagep32.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning the creation of a device with its
+ * registration token and setup configuration.
+ */
+@Name("com.lorenz.esignagep32.SetupGenerated")
+@Label("Setup Generated")
+@Category({"ESignageP32", "Provisioning"})
+@Enabled(false)
+@StackTrace(false)
+public class SetupGeneratedEvent extends Event {
+
+    @Label("Device ID")
+    public long deviceId;
+}
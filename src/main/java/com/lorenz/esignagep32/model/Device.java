@@ -3,9 +3,13 @@ package com.lorenz.esignagep32.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Entity representing a physical ESignageP32 device assigned to a user.
@@ -15,7 +19,8 @@ import java.util.List;
 @Entity
 @Getter
 @Setter
-@Table(name = "devices")
+@Table(name = "devices",
+        indexes = @Index(name = "idx_devices_owner_id", columnList = "user_id, id"))
 public class Device {
 
     /**
@@ -54,12 +59,58 @@ public class Device {
     @Column(nullable = false, unique = true)
     private String deviceToken;
 
+    /**
+     * Number of times the device token was reissued; embedded in signed
+     * tokens so the tokens of earlier generations can be revoked.
+     */
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private int tokenGeneration;
+
+    /**
+     * Monotonically increasing version of the device's own configuration.
+     * <p>
+     * Bumped on every change to settings, messages or group memberships.
+     * The version served to the device, and its ETag, adds the versions
+     * of all its groups. Only written through the atomic updates of
+     * {@code DeviceRepository}, so concurrent edits can never lose an
+     * increment.
+     */
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long configVersion;
+
+    /**
+     * Time of the most recent configuration change, or of the creation.
+     * <p>
+     * Written together with {@link #configVersion} by the same update, and
+     * for the same reason never by dirty checking. Null for devices created
+     * before the column existed until their next change.
+     */
+    @Column(updatable = false)
+    private Instant configChangedAt;
+
     /**
      * List of display messages associated with this device.
      * <p>
      * Cascade operations ensure messages are persisted/removed
-     * along with the device.
+     * along with the device. Ordered by ID so that newly added
+     * messages always come last.
      */
     @OneToMany(mappedBy = "device", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
     private List<DisplayMessage> messages = new ArrayList<>();
+
+    /**
+     * Groups whose playlists the device shows before its own messages.
+     * <p>
+     * Memberships are removed together with the device.
+     */
+    @ManyToMany
+    @JoinTable(name = "device_group_members",
+            joinColumns = @JoinColumn(name = "device_id"),
+            inverseJoinColumns = @JoinColumn(name = "group_id"),
+            indexes = @Index(name = "idx_device_group_members_group", columnList = "group_id"))
+    @OrderBy("id")
+    private Set<DeviceGroup> groups = new LinkedHashSet<>();
 }
@@ -0,0 +1,71 @@
+package com.lorenz.esignagep32.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Entity representing a named group of devices of one user, such as a
+ * building or a floor.
+ * <p>
+ * The group owns a playlist of messages that every member device shows
+ * in addition to its own messages.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "device_groups")
+public class DeviceGroup {
+
+    /**
+     * Primary key identifier for the group.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * User-defined name for the group.
+     */
+    @Column(nullable = false)
+    private String name;
+
+    /**
+     * Owner of this group; only devices of the same user can join it.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "user_id")
+    private User owner;
+
+    /**
+     * Monotonically increasing version of the group playlist.
+     * <p>
+     * Part of the configuration version of every member device, which is
+     * the device's own version plus the versions of all its groups. Only
+     * written through {@code DeviceGroupRepository.incrementConfigVersion}.
+     */
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private long configVersion;
+
+    /**
+     * Playlist of the group, ordered by ID so that newly added messages
+     * always come last.
+     */
+    @OneToMany(mappedBy = "group", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
+    private List<GroupMessage> messages = new ArrayList<>();
+
+    /**
+     * Devices inheriting the playlist; the membership is owned by {@link Device#getGroups()}.
+     */
+    @ManyToMany(mappedBy = "groups")
+    @OrderBy("id")
+    private Set<Device> members = new LinkedHashSet<>();
+}
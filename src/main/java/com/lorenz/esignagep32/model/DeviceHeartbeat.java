@@ -0,0 +1,62 @@
+package com.lorenz.esignagep32.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.Instant;
+
+/**
+ * Entity recording when a device last polled its configuration and from where.
+ * <p>
+ * Rows are written in batches by the heartbeat tracker, never per request,
+ * and removed by the database together with their device.
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "device_heartbeats")
+public class DeviceHeartbeat {
+
+    /**
+     * Identifier of the device, shared with the device's primary key.
+     */
+    @Id
+    @Column(name = "device_id")
+    private Long deviceId;
+
+    /**
+     * The device this heartbeat belongs to.
+     */
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @MapsId
+    @JoinColumn(name = "device_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Device device;
+
+    /**
+     * Time of the most recent poll.
+     */
+    @Column(nullable = false)
+    private Instant lastSeenAt;
+
+    /**
+     * Firmware version reported by the device, if any.
+     */
+    @Column(length = 32)
+    private String firmwareVersion;
+
+    /**
+     * IP address the most recent poll came from.
+     */
+    @Column(length = 64)
+    private String sourceIp;
+
+    /**
+     * Total number of polls recorded for the device.
+     */
+    @Column(nullable = false)
+    private long pollCount;
+}
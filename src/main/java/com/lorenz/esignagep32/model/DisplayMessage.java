@@ -7,10 +7,12 @@ import lombok.Setter;
 /**
  * Entity representing an individual message to display on an ESignageP32 device.
  * <p>
- * Contains text content, rendering options, and associated device relationship.
+ * Contains text content, rendering options, an optional schedule, and
+ * associated device relationship.
  */
 @Entity
-@Table(name = "messages")
+@Table(name = "messages",
+        indexes = @Index(name = "idx_messages_device", columnList = "device_id"))
 @Getter
 @Setter
 public class DisplayMessage {
@@ -46,4 +48,10 @@ public class DisplayMessage {
      */
     @Column(nullable = false)
     private boolean scroll = false;
+
+    /**
+     * When the message is shown; null if it is always shown.
+     */
+    @Embedded
+    private MessageSchedule schedule;
 }
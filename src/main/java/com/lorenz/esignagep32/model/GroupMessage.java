@@ -0,0 +1,67 @@
+package com.lorenz.esignagep32.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Entity representing a message of a group playlist.
+ * <p>
+ * Stored apart from device messages, so its IDs may collide with theirs.
+ * Devices therefore receive it under {@link #configId()}, which lies in
+ * the upper half of the u32 range used by the device protocol.
+ */
+@Entity
+@Table(name = "group_messages",
+        indexes = @Index(name = "idx_group_messages_group", columnList = "group_id"))
+@Getter
+@Setter
+public class GroupMessage {
+
+    /**
+     * Offset added to group message IDs in device configurations.
+     */
+    public static final long CONFIG_ID_BASE = 1L << 31;
+
+    /**
+     * Primary key identifier for the group message.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The group whose playlist contains this message. Lazy, so loading a
+     * playlist into the cache does not load its group and owner again.
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "group_id")
+    private DeviceGroup group;
+
+    /**
+     * The textual content to display (max length 512 characters).
+     */
+    @Column(nullable = false, length = 512)
+    private String text;
+
+    /**
+     * The font size multiplier for rendering the message.
+     */
+    @Column(nullable = false)
+    private int fontSize = 1;
+
+    /**
+     * Indicates whether the message should scroll on the screen.
+     */
+    @Column(nullable = false)
+    private boolean scroll = false;
+
+    /**
+     * Returns the ID under which devices receive this message.
+     *
+     * @return the message ID in device configurations
+     */
+    public long configId() {
+        return CONFIG_ID_BASE + id;
+    }
+}
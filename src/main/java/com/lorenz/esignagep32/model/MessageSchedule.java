@@ -0,0 +1,176 @@
+package com.lorenz.esignagep32.model;
+
+import jakarta.persistence.Embeddable;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * When a display message is shown.
+ * <p>
+ * A message is shown within {@code [validFrom, validUntil)} and, if a
+ * window is set, only on the given weekdays between the daily start and
+ * end times. A window whose end is not after its start runs past midnight
+ * and belongs to the weekday it starts on. Days and times are interpreted
+ * in the configured schedule zone; null fields do not restrict anything.
+ */
+@Embeddable
+@Getter
+@Setter
+public class MessageSchedule {
+
+    // Bits 0 to 6 stand for Monday to Sunday
+    public static final int ALL_DAYS = 0x7F;
+
+    /**
+     * First instant the message is shown, null for no lower bound.
+     */
+    private Instant validFrom;
+
+    /**
+     * Instant the message stops being shown, null for no upper bound.
+     */
+    private Instant validUntil;
+
+    /**
+     * Weekdays the message is shown on as a bit mask, null for every day.
+     */
+    private Integer activeDays;
+
+    /**
+     * Local time the daily window opens, null for midnight.
+     */
+    private LocalTime dailyStart;
+
+    /**
+     * Local time the daily window closes, null for midnight at the end of the day.
+     */
+    private LocalTime dailyEnd;
+
+    /**
+     * Returns the bit of a weekday in {@link #activeDays}.
+     *
+     * @param day the weekday
+     * @return the mask with only that day set
+     */
+    public static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    /**
+     * Tells whether the message is shown at the given instant.
+     *
+     * @param instant the instant to check
+     * @param zone    the zone days and times refer to
+     * @return true if the message is shown
+     */
+    public boolean isActive(Instant instant, ZoneId zone) {
+        if (validFrom != null && instant.isBefore(validFrom)) {
+            return false;
+        }
+        if (validUntil != null && !instant.isBefore(validUntil)) {
+            return false;
+        }
+        if (!hasWindow()) {
+            return true;
+        }
+        LocalDate date = instant.atZone(zone).toLocalDate();
+        LocalTime time = instant.atZone(zone).toLocalTime();
+        LocalTime start = dailyStart == null ? LocalTime.MIDNIGHT : dailyStart;
+        if (dailyEnd == null || dailyEnd.isAfter(start)) {
+            return isOn(date) && !time.isBefore(start) && (dailyEnd == null || time.isBefore(dailyEnd));
+        }
+        // Overnight window: the early hours belong to the previous day's window
+        if (!time.isBefore(start)) {
+            return isOn(date);
+        }
+        return time.isBefore(dailyEnd) && isOn(date.minusDays(1));
+    }
+
+    /**
+     * Finds the first instant after the given one at which the message
+     * appears or disappears.
+     *
+     * @param after the instant to search from, exclusive
+     * @param zone  the zone days and times refer to
+     * @return the next change, or null if the message never changes again
+     */
+    public Instant nextChange(Instant after, ZoneId zone) {
+        NavigableSet<Instant> candidates = new TreeSet<>();
+        if (validFrom != null) {
+            candidates.add(validFrom);
+        }
+        if (validUntil != null) {
+            candidates.add(validUntil);
+        }
+        if (hasWindow()) {
+            // Window edges of the week following the later of now and validFrom, plus the night before
+            Instant base = validFrom != null && validFrom.isAfter(after) ? validFrom : after;
+            LocalDate date = base.atZone(zone).toLocalDate().minusDays(1);
+            LocalTime start = dailyStart == null ? LocalTime.MIDNIGHT : dailyStart;
+            for (int i = 0; i < 9; i++, date = date.plusDays(1)) {
+                candidates.add(date.atTime(start).atZone(zone).toInstant());
+                candidates.add(dailyEnd == null
+                        ? date.plusDays(1).atStartOfDay(zone).toInstant()
+                        : date.atTime(dailyEnd).atZone(zone).toInstant());
+            }
+        }
+        boolean active = isActive(after, zone);
+        for (Instant candidate : candidates.tailSet(after, false)) {
+            if (isActive(candidate, zone) != active) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Describes the schedule for the message list.
+     *
+     * @param zone the zone to show dates and times in
+     * @return a short human readable summary
+     */
+    public String summary(ZoneId zone) {
+        StringBuilder text = new StringBuilder();
+        if (activeDays != null && activeDays != ALL_DAYS) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if ((activeDays & dayBit(day)) != 0) {
+                    text.append(text.isEmpty() ? "" : " ")
+                            .append(day.getDisplayName(TextStyle.SHORT, Locale.ENGLISH));
+                }
+            }
+        }
+        if (dailyStart != null || dailyEnd != null) {
+            text.append(text.isEmpty() ? "" : ", ")
+                    .append(dailyStart == null ? LocalTime.MIDNIGHT : dailyStart)
+                    .append("–")
+                    .append(dailyEnd == null ? "24:00" : dailyEnd);
+        }
+        if (validFrom != null) {
+            text.append(text.isEmpty() ? "" : ", ")
+                    .append("from ").append(validFrom.atZone(zone).toLocalDateTime());
+        }
+        if (validUntil != null) {
+            text.append(text.isEmpty() ? "" : ", ")
+                    .append("until ").append(validUntil.atZone(zone).toLocalDateTime());
+        }
+        return text.toString();
+    }
+
+    private boolean hasWindow() {
+        return activeDays != null || dailyStart != null || dailyEnd != null;
+    }
+
+    private boolean isOn(LocalDate date) {
+        return activeDays == null || (activeDays & dayBit(date.getDayOfWeek())) != 0;
+    }
+}
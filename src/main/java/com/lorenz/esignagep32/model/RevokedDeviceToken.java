@@ -0,0 +1,47 @@
+package com.lorenz.esignagep32.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+
+/**
+ * Entity marking signed device tokens of a device as revoked, up to a
+ * token generation.
+ * <p>
+ * Signed tokens are verified without a database lookup, so revoking one
+ * needs an explicit entry. Rows are kept after the device is deleted;
+ * device IDs are never reused, so the table only ever grows by one small
+ * row per device whose token was revoked.
+ */
+@Entity
+@Table(name = "revoked_device_tokens")
+@Getter
+@Setter
+@NoArgsConstructor
+public class RevokedDeviceToken {
+
+    /**
+     * ID of the device whose signed tokens are no longer accepted.
+     */
+    @Id
+    @Column(name = "device_id")
+    private Long deviceId;
+
+    /**
+     * Newest rejected token generation; {@link Integer#MAX_VALUE} rejects
+     * all tokens of the device, e.g. once it is deleted.
+     */
+    @Column(nullable = false)
+    @ColumnDefault("2147483647")
+    private int generation;
+
+    /**
+     * Timestamp when a token was last revoked.
+     */
+    @Column(nullable = false)
+    private Instant revokedAt;
+}
@@ -0,0 +1,101 @@
+package com.lorenz.esignagep32.ratelimit;
+
+import com.lorenz.esignagep32.security.DeviceRequestPaths;
+import com.lorenz.esignagep32.security.DeviceTokenAuthenticationFilter;
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Rate limits the device API before security, controllers or any
+ * repository are involved.
+ * <p>
+ * A request must pass three checks, all without locks: a token bucket of
+ * the device ID in its path, charged only once its token has been
+ * verified, a token bucket of its client address, charged only when the
+ * token is wrong, and a cap on device requests in progress across the
+ * server. Bogus tokens thus never drain the buckets of real devices, and
+ * devices behind one NAT address or proxy do not share a budget. An
+ * address that has used up its failures is rejected before its token is
+ * checked. A rejected request is answered with 429 Too Many Requests and
+ * a Retry-After header in seconds.
+ * <p>
+ * The client address is the one Tomcat reports, i.e. taken from the
+ * forwarded headers of a trusted proxy, see {@code server.tomcat.remoteip}.
+ * <p>
+ * Long-polls count against the concurrency cap only until they are
+ * suspended; their asynchronous completion is not filtered again.
+ */
+@Slf4j
+public class DeviceRateLimitFilter extends OncePerRequestFilter {
+
+    private final StripedTokenBuckets deviceBuckets;
+    private final StripedTokenBuckets addressBuckets;
+    private final DeviceTokenVerifier tokenVerifier;
+    private final Semaphore inFlight;
+
+    /**
+     * Creates the filter.
+     *
+     * @param deviceBuckets  buckets keyed by device ID
+     * @param addressBuckets buckets of failed authentications keyed by client address
+     * @param tokenVerifier  verifier of device tokens
+     * @param maxConcurrent  device requests processed at the same time at most
+     */
+    public DeviceRateLimitFilter(StripedTokenBuckets deviceBuckets,
+                                 StripedTokenBuckets addressBuckets,
+                                 DeviceTokenVerifier tokenVerifier,
+                                 int maxConcurrent) {
+        this.deviceBuckets = deviceBuckets;
+        this.addressBuckets = addressBuckets;
+        this.tokenVerifier = tokenVerifier;
+        this.inFlight = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+
+        // An address out of failures is not even checked: guessing tokens stays throttled
+        int address = request.getRemoteAddr().hashCode();
+        long wait = addressBuckets.peek(address);
+        if (wait == 0) {
+            if (DeviceTokenAuthenticationFilter.verify(request, tokenVerifier)) {
+                wait = deviceBuckets.tryAcquire(DeviceRequestPaths.deviceId(request.getRequestURI()));
+            } else {
+                // Let the request fail authorization, but charge its address
+                addressBuckets.tryAcquire(address);
+            }
+        }
+        if (wait > 0) {
+            reject(request, response, wait);
+            return;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            reject(request, response, 1000);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private static void reject(HttpServletRequest request, HttpServletResponse response, long waitMillis) {
+        log.debug("Rate limited {} from {}", request.getRequestURI(), request.getRemoteAddr());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.ceilDiv(waitMillis, 1000)));
+    }
+}
@@ -0,0 +1,124 @@
+package com.lorenz.esignagep32.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size table of token buckets addressed by hashing a key.
+ * <p>
+ * Each bucket is one long packing the time of its last refill and its
+ * remaining tokens, and is updated with compare-and-set only; there are no
+ * locks and no allocations per request. Memory does not depend on the
+ * number of keys: keys hashing to the same stripe share a bucket, which
+ * can only make the limit stricter for them, never looser.
+ * <p>
+ * Tokens are counted in thousandths, so rates below one per second work.
+ */
+public final class StripedTokenBuckets {
+
+    private static final int TOKEN_BITS = 22;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE_TOKEN = 1000;         // Thousandths per token
+
+    private final AtomicLongArray buckets;
+    private final long capacity;        // Bucket size in thousandths of a token
+    private final long ratePerSecond;   // Refill in thousandths of a token per second
+    private final long origin = System.nanoTime() / 1_000_000 - 1;
+
+    /**
+     * Creates a table of full buckets.
+     *
+     * @param stripes       number of buckets, rounded up to a power of two
+     * @param ratePerSecond tokens added per second
+     * @param burst         tokens a bucket holds at most
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public StripedTokenBuckets(int stripes, double ratePerSecond, int burst) {
+        if (stripes < 1 || stripes > 1 << 24) {
+            throw new IllegalArgumentException("Invalid stripe count: " + stripes);
+        }
+        if (ratePerSecond < 0.001 || burst < 1 || burst * ONE_TOKEN > TOKEN_MASK) {
+            throw new IllegalArgumentException("Invalid rate " + ratePerSecond + "/s with burst " + burst);
+        }
+        int size = Integer.highestOneBit(stripes);
+        this.buckets = new AtomicLongArray(size < stripes ? size << 1 : size);
+        this.capacity = burst * ONE_TOKEN;
+        this.ratePerSecond = Math.round(ratePerSecond * ONE_TOKEN);
+    }
+
+    /**
+     * Takes a token from the bucket of a key if one is available.
+     *
+     * @param key the key to limit, e.g. a device ID or a hash of an address
+     * @return 0 if a token was taken, otherwise the milliseconds until the
+     *         bucket will hold a token again
+     */
+    public long tryAcquire(long key) {
+        return acquire(key, true);
+    }
+
+    /**
+     * Tells whether the bucket of a key holds a token, without taking it.
+     *
+     * @param key the key to check
+     * @return 0 if a token is available, otherwise the milliseconds until
+     *         the bucket will hold one again
+     */
+    public long peek(long key) {
+        return acquire(key, false);
+    }
+
+    private long acquire(long key, boolean take) {
+        int index = (int) (mix(key) & (buckets.length() - 1));
+        long now = System.nanoTime() / 1_000_000 - origin;
+        while (true) {
+            long current = buckets.get(index);
+            long tokens;
+            long refilledAt;
+            if (current == 0) {
+                // Never used
+                tokens = capacity;
+                refilledAt = now;
+            } else {
+                refilledAt = current >>> TOKEN_BITS;
+                long added = Math.max(0, now - refilledAt) * ratePerSecond / 1000;
+                tokens = (current & TOKEN_MASK) + added;
+                if (tokens >= capacity) {
+                    tokens = capacity;
+                    refilledAt = now;
+                } else {
+                    // Only advance by the time actually converted into tokens, keeping the remainder
+                    refilledAt += added * 1000 / ratePerSecond;
+                }
+            }
+            if (tokens < ONE_TOKEN) {
+                return Math.max(1, Math.ceilDiv((ONE_TOKEN - tokens) * 1000, ratePerSecond));
+            }
+            if (!take) {
+                return 0;
+            }
+            long next = refilledAt << TOKEN_BITS | (tokens - ONE_TOKEN);
+            if (buckets.compareAndSet(index, current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of buckets.
+     *
+     * @return the stripe count
+     */
+    public int stripes() {
+        return buckets.length();
+    }
+
+    /**
+     * Scrambles a key so that neighbouring keys land on distant stripes.
+     */
+    private static long mix(long key) {
+        long z = key * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,256 @@
+package com.lorenz.esignagep32.render;
+
+import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of rasterized messages keyed by message content, shared by all
+ * devices showing the same text.
+ * <p>
+ * A message is rendered once into a buffer that then becomes the cache
+ * entry, so repeated requests neither draw nor allocate per frame. The
+ * encoded frame lists of recently polled devices are kept as well until
+ * their configuration version changes; both maps are bounded.
+ */
+@Component
+public class FrameCache {
+
+    /**
+     * Media type of the encoded frame list served to devices.
+     */
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.esignagep32.frames";
+
+    private static final byte[] MAGIC = {'E', 'S', 'F'};
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_FONT_SIZE = 8;
+
+    @Value("${esp32.frames.cache-size:10000}")
+    private int maxEntries;             // Distinct messages kept rendered
+
+    @Value("${esp32.frames.payload-cache-size:1000}")
+    private int maxPayloads;            // Devices whose encoded frame list is kept
+
+    private final Map<FrameKey, RenderedFrame> frames = new ConcurrentHashMap<>();
+    private final Map<Long, DevicePayload> payloads = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the encoded frames of a device configuration, encoding them
+     * only if the version differs from the one encoded last.
+     *
+     * @param deviceId      the ID of the device
+     * @param configVersion the configuration version the messages belong to
+     * @param messages      the messages in display order
+     * @return the encoded frames, see {@link #encode}
+     */
+    public byte[] payload(Long deviceId, long configVersion, List<MessageDto> messages) {
+        DevicePayload payload = payloads.get(deviceId);
+        if (payload != null && payload.version() == configVersion) {
+            return payload.bytes();
+        }
+        byte[] bytes = encode(configVersion, messages);
+        if (payload == null && payloads.size() >= maxPayloads) {
+            evict(payloads, maxPayloads);
+        }
+        payloads.merge(deviceId, new DevicePayload(configVersion, bytes),
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+        return bytes;
+    }
+
+    /**
+     * Forgets the encoded frames of deleted devices.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            payloads.remove(event.deviceId());
+        }
+    }
+
+    /**
+     * Returns the rendered frame for a message, drawing it on first use.
+     *
+     * @param message the message to render
+     * @return the cached frame
+     */
+    public RenderedFrame frame(MessageDto message) {
+        FrameKey key = new FrameKey(message.getText() == null ? "" : message.getText(),
+                Math.clamp(message.getFontSize(), 1, MAX_FONT_SIZE),
+                message.isScroll());
+        RenderedFrame frame = frames.get(key);
+        if (frame != null) {
+            hits.increment();
+            return frame;
+        }
+        misses.increment();
+        frame = render(key);
+        if (frames.size() >= maxEntries) {
+            evict(frames, maxEntries);
+        }
+        RenderedFrame existing = frames.putIfAbsent(key, frame);
+        return existing != null ? existing : frame;
+    }
+
+    /**
+     * Returns how many messages were served from the cache.
+     *
+     * @return the number of hits since startup
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many messages had to be rendered.
+     *
+     * @return the number of misses since startup
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of distinct messages currently kept rendered.
+     *
+     * @return the number of cached frames
+     */
+    public int size() {
+        return frames.size();
+    }
+
+    /**
+     * Encodes the frames of all messages for delivery to a device.
+     * <p>
+     * Little-endian layout:
+     * <pre>
+     * magic          3 bytes "ESF"
+     * formatVersion  u8      1
+     * configVersion  u32
+     * frameCount     u16
+     * frameCount x {
+     *   messageId    u32
+     *   flags        u8      bit 0 = scroll
+     *   width        u16     pixels
+     *   height       u8      pixels
+     *   offsetY      u8      screen row of the buffer
+     *   length       u32     byte length of the pixels
+     *   pixels       packed SSD1306 page layout
+     * }
+     * </pre>
+     *
+     * @param configVersion the configuration version the messages belong to
+     * @param messages      the messages in display order
+     * @return the encoded frames
+     */
+    public byte[] encode(long configVersion, List<MessageDto> messages) {
+        RenderedFrame[] rendered = new RenderedFrame[messages.size()];
+        int size = MAGIC.length + 1 + 4 + 2;
+        for (int i = 0; i < rendered.length; i++) {
+            rendered[i] = frame(messages.get(i));
+            size += 4 + 1 + 2 + 1 + 1 + 4 + rendered[i].pixels().length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(MAGIC);
+        buf.put((byte) FORMAT_VERSION);
+        buf.putInt((int) configVersion);
+        buf.putShort((short) rendered.length);
+        for (int i = 0; i < rendered.length; i++) {
+            RenderedFrame frame = rendered[i];
+            Long id = messages.get(i).getId();
+            buf.putInt(id == null ? 0 : id.intValue());
+            buf.put((byte) (frame.scroll() ? 1 : 0));
+            buf.putShort((short) frame.width());
+            buf.put((byte) frame.height());
+            buf.put((byte) frame.offsetY());
+            buf.putInt(frame.pixels().length);
+            buf.put(frame.pixels());
+        }
+        return buf.array();
+    }
+
+    /**
+     * Renders a frame as a PNG image at its screen position, for previews.
+     *
+     * @param frame the frame to convert
+     * @return the PNG bytes
+     */
+    public byte[] toPng(RenderedFrame frame) {
+        int width = Math.max(frame.width(), OledRasterizer.SCREEN_WIDTH);
+        BufferedImage image = new BufferedImage(width, OledRasterizer.SCREEN_HEIGHT,
+                BufferedImage.TYPE_BYTE_BINARY);
+        for (int x = 0; x < frame.width(); x++) {
+            for (int y = 0; y < frame.height(); y++) {
+                if (OledRasterizer.pixel(frame.pixels(), frame.width(), x, y)) {
+                    image.setRGB(x, frame.offsetY() + y, 0xFFFFFF);
+                }
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static RenderedFrame render(FrameKey key) {
+        if (key.scroll()) {
+            byte[] strip = new byte[OledRasterizer.stripBytes(key.text(), key.fontSize())];
+            OledRasterizer.renderStrip(key.text(), key.fontSize(), strip);
+            return new RenderedFrame(true,
+                    OledRasterizer.stripWidth(key.text(), key.fontSize()),
+                    OledRasterizer.stripHeight(key.fontSize()),
+                    OledRasterizer.stripOffsetY(key.fontSize()),
+                    strip);
+        }
+        byte[] frame = new byte[OledRasterizer.FRAME_BYTES];
+        OledRasterizer.renderStatic(key.text(), key.fontSize(), frame);
+        return new RenderedFrame(false, OledRasterizer.SCREEN_WIDTH, OledRasterizer.SCREEN_HEIGHT, 0, frame);
+    }
+
+    /**
+     * Drops about a quarter of the entries to make room; cheap and good
+     * enough since popular entries are rebuilt on their next use.
+     */
+    private static void evict(Map<?, ?> cache, int limit) {
+        int toRemove = Math.max(1, limit / 4);
+        Iterator<?> it = cache.keySet().iterator();
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Encoded frame list of one device configuration version.
+     */
+    private record DevicePayload(long version, byte[] bytes) {
+    }
+
+    /**
+     * Content key of a rendered message; equal content shares one frame.
+     */
+    private record FrameKey(String text, int fontSize, boolean scroll) {
+    }
+}
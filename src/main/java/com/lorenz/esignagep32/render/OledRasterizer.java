@@ -0,0 +1,170 @@
+package com.lorenz.esignagep32.render;
+
+import java.util.Arrays;
+
+/**
+ * Draws display messages into packed 1-bit framebuffers the way the
+ * firmware does with Adafruit GFX on a 128x64 SSD1306.
+ * <p>
+ * Buffers use the SSD1306 page layout: one byte per column and 8-pixel
+ * page, least significant bit at the top, so byte {@code x + page * width}
+ * holds pixels {@code (x, page * 8 .. page * 8 + 7)}. All methods draw
+ * into caller-provided buffers and allocate nothing.
+ */
+public final class OledRasterizer {
+
+    public static final int SCREEN_WIDTH = 128;
+    public static final int SCREEN_HEIGHT = 64;
+
+    /**
+     * Size in bytes of a full-screen frame.
+     */
+    public static final int FRAME_BYTES = SCREEN_WIDTH * SCREEN_HEIGHT / 8;
+
+    private OledRasterizer() {
+    }
+
+    /**
+     * Renders a static message with line wrapping, starting at the top left.
+     *
+     * @param text     the message text
+     * @param fontSize the font size multiplier
+     * @param frame    target buffer of {@link #FRAME_BYTES} bytes, overwritten
+     */
+    public static void renderStatic(CharSequence text, int fontSize, byte[] frame) {
+        Arrays.fill(frame, 0, FRAME_BYTES, (byte) 0);
+        int cellWidth = OledFont.CELL_WIDTH * fontSize;
+        int cellHeight = OledFont.CELL_HEIGHT * fontSize;
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                x = 0;
+                y += cellHeight;
+                continue;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            // Wrap before a glyph that would not fit, like setTextWrap(true)
+            if (x + cellWidth > SCREEN_WIDTH) {
+                x = 0;
+                y += cellHeight;
+            }
+            if (y >= SCREEN_HEIGHT) {
+                break;
+            }
+            drawChar(frame, SCREEN_WIDTH, SCREEN_HEIGHT, x, y, c, fontSize);
+            x += cellWidth;
+        }
+    }
+
+    /**
+     * Returns the width of the scroll strip for a message, matching the
+     * firmware's {@code text.length() * 6 * fontSize}.
+     *
+     * @param text     the message text
+     * @param fontSize the font size multiplier
+     * @return strip width in pixels
+     */
+    public static int stripWidth(CharSequence text, int fontSize) {
+        return text.length() * OledFont.CELL_WIDTH * fontSize;
+    }
+
+    /**
+     * Returns the height of the scroll strip for a font size.
+     *
+     * @param fontSize the font size multiplier
+     * @return strip height in pixels
+     */
+    public static int stripHeight(int fontSize) {
+        return OledFont.CELL_HEIGHT * fontSize;
+    }
+
+    /**
+     * Returns the vertical position at which the firmware centers a scrolling message.
+     *
+     * @param fontSize the font size multiplier
+     * @return top row of the strip on the screen
+     */
+    public static int stripOffsetY(int fontSize) {
+        return (SCREEN_HEIGHT - stripHeight(fontSize)) / 2;
+    }
+
+    /**
+     * Returns the size in bytes of a scroll strip buffer.
+     *
+     * @param text     the message text
+     * @param fontSize the font size multiplier
+     * @return buffer size in bytes
+     */
+    public static int stripBytes(CharSequence text, int fontSize) {
+        return stripWidth(text, fontSize) * pages(stripHeight(fontSize));
+    }
+
+    /**
+     * Renders a message as a single unwrapped line for horizontal scrolling.
+     * The device shows a window of the strip at its current scroll offset.
+     *
+     * @param text     the message text
+     * @param fontSize the font size multiplier
+     * @param strip    target buffer of {@link #stripBytes} bytes, overwritten
+     */
+    public static void renderStrip(CharSequence text, int fontSize, byte[] strip) {
+        int width = stripWidth(text, fontSize);
+        int height = stripHeight(fontSize);
+        Arrays.fill(strip, 0, width * pages(height), (byte) 0);
+        int cellWidth = OledFont.CELL_WIDTH * fontSize;
+        for (int i = 0; i < text.length(); i++) {
+            drawChar(strip, width, height, i * cellWidth, 0, text.charAt(i), fontSize);
+        }
+    }
+
+    /**
+     * Reads one pixel of a packed buffer.
+     *
+     * @param buffer the packed buffer
+     * @param width  the buffer width in pixels
+     * @param x      column
+     * @param y      row
+     * @return true if the pixel is lit
+     */
+    public static boolean pixel(byte[] buffer, int width, int x, int y) {
+        return (buffer[x + (y >> 3) * width] & (1 << (y & 7))) != 0;
+    }
+
+    private static int pages(int height) {
+        return (height + 7) >> 3;
+    }
+
+    /**
+     * Draws one glyph scaled by {@code size}, clipped to the buffer.
+     */
+    private static void drawChar(byte[] buffer, int width, int height,
+                                 int x0, int y0, char c, int size) {
+        int offset = OledFont.offsetOf(c);
+        for (int col = 0; col < OledFont.GLYPH_COLUMNS; col++) {
+            int bits = OledFont.column(offset + col);
+            for (int row = 0; bits != 0; row++, bits >>>= 1) {
+                if ((bits & 1) == 0) {
+                    continue;
+                }
+                int px = x0 + col * size;
+                int py = y0 + row * size;
+                for (int dx = 0; dx < size; dx++) {
+                    int x = px + dx;
+                    if (x < 0 || x >= width) {
+                        continue;
+                    }
+                    for (int dy = 0; dy < size; dy++) {
+                        int y = py + dy;
+                        if (y >= 0 && y < height) {
+                            buffer[x + (y >> 3) * width] |= (byte) (1 << (y & 7));
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.lorenz.esignagep32.render;
+
+/**
+ * A message rasterized for the OLED display.
+ * <p>
+ * Static messages are a full 128x64 frame; scrolling messages are a strip
+ * of one text line that the device moves across the screen at row
+ * {@code offsetY}. Pixels use the packed page layout of {@link OledRasterizer}
+ * and must not be modified.
+ *
+ * @param scroll  whether the message scrolls
+ * @param width   width of the buffer in pixels
+ * @param height  height of the buffer in pixels
+ * @param offsetY row at which the buffer is placed on the screen
+ * @param pixels  the packed 1-bit pixels
+ */
+public record RenderedFrame(boolean scroll, int width, int height, int offsetY, byte[] pixels) {
+}
@@ -0,0 +1,73 @@
+package com.lorenz.esignagep32.repository;
+
+import com.lorenz.esignagep32.dto.GroupSummaryDto;
+import com.lorenz.esignagep32.model.DeviceGroup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface DeviceGroupRepository extends JpaRepository<DeviceGroup, Long> {
+
+    @Query("""
+            select new com.lorenz.esignagep32.dto.GroupSummaryDto(g.id, g.name, g.configVersion,
+                (select count(d) from DeviceGroup x join x.members d where x.id = g.id),
+                (select count(m) from GroupMessage m where m.group.id = g.id))
+            from DeviceGroup g
+            where g.owner.username = :username
+            order by g.name, g.id""")
+    List<GroupSummaryDto> findSummaries(@Param("username") String username);
+
+    /**
+     * Loads a group and locks its row until the transaction ends, so its
+     * playlist version cannot change meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select g from DeviceGroup g where g.id = :id")
+    Optional<DeviceGroup> findByIdForUpdate(@Param("id") Long id);
+
+    @Modifying
+    @Query("update DeviceGroup g set g.configVersion = g.configVersion + 1 where g.id = :id")
+    int incrementConfigVersion(@Param("id") Long id);
+
+    @Query("select g.configVersion from DeviceGroup g where g.id = :id")
+    Optional<Long> findConfigVersionById(@Param("id") Long id);
+
+    @Query("select d.id from DeviceGroup g join g.members d where g.id = :id order by d.id")
+    List<Long> findMemberIds(@Param("id") Long id);
+
+    /**
+     * Lists the IDs of an owner's devices matching a name pattern that are not yet members.
+     *
+     * @param group    the group
+     * @param username the owner's username
+     * @param pattern  LIKE pattern matched against the lower-cased name, escaped with {@code !}
+     * @return matching device IDs in ascending order
+     */
+    @Query("""
+            select d.id from Device d
+            where d.owner.username = :username
+              and lower(d.name) like :pattern escape '!'
+              and :group not member of d.groups
+            order by d.id""")
+    List<Long> findNonMemberIds(@Param("group") DeviceGroup group,
+                                @Param("username") String username,
+                                @Param("pattern") String pattern);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into device_group_members (device_id, group_id)
+            select d.id, :groupId from devices d where d.id in (:deviceIds)""")
+    int insertMemberships(@Param("groupId") Long groupId, @Param("deviceIds") Collection<Long> deviceIds);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            delete from device_group_members where group_id = :groupId and device_id in (:deviceIds)""")
+    int deleteMemberships(@Param("groupId") Long groupId, @Param("deviceIds") Collection<Long> deviceIds);
+}
@@ -1,10 +1,146 @@
 package com.lorenz.esignagep32.repository;
 
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.dto.DeviceSummaryDto;
 import com.lorenz.esignagep32.model.Device;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 
 public interface DeviceRepository extends JpaRepository<Device, Long> {
     List<Device> findByOwnerUsername(String username);
+
+    @Modifying
+    @Query("""
+            update Device d
+            set d.configVersion = d.configVersion + 1, d.configChangedAt = :changedAt
+            where d.id = :id""")
+    int incrementConfigVersion(@Param("id") Long id, @Param("changedAt") Instant changedAt);
+
+    @Modifying
+    @Query("""
+            update Device d
+            set d.configVersion = d.configVersion + :delta, d.configChangedAt = :changedAt
+            where d.id in :ids""")
+    int advanceConfigVersions(@Param("ids") Collection<Long> ids,
+                              @Param("delta") long delta,
+                              @Param("changedAt") Instant changedAt);
+
+    /**
+     * Reads the served configuration versions of devices, split into the
+     * devices' own versions and the sums of their groups' versions.
+     *
+     * @param ids the IDs of the devices
+     * @return one row per existing device
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.ConfigVersionDto(d.id, d.configVersion,
+                coalesce((select sum(g.configVersion) from Device x join x.groups g where x.id = d.id), 0))
+            from Device d
+            where d.id in :ids""")
+    List<ConfigVersionDto> findConfigVersions(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Reads the served configuration versions of all devices of an owner.
+     *
+     * @param username the owner's username
+     * @return one row per device, ordered by ID
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.ConfigVersionDto(d.id, d.configVersion,
+                coalesce((select sum(g.configVersion) from Device x join x.groups g where x.id = d.id), 0))
+            from Device d
+            where d.owner.username = :username
+            order by d.id""")
+    List<ConfigVersionDto> findConfigVersionsByOwner(@Param("username") String username);
+
+    /**
+     * Reads the served configuration versions of some devices of an owner;
+     * IDs of other users' devices are ignored.
+     *
+     * @param username the owner's username
+     * @param ids      the IDs of the devices
+     * @return one row per matching device, ordered by ID
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.ConfigVersionDto(d.id, d.configVersion,
+                coalesce((select sum(g.configVersion) from Device x join x.groups g where x.id = d.id), 0))
+            from Device d
+            where d.owner.username = :username
+              and d.id in :ids
+            order by d.id""")
+    List<ConfigVersionDto> findConfigVersionsByOwner(@Param("username") String username,
+                                                     @Param("ids") Collection<Long> ids);
+
+    /**
+     * Reads the served configuration versions of the members of a group.
+     *
+     * @param groupId the ID of the group
+     * @return one row per member device, ordered by ID
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.ConfigVersionDto(d.id, d.configVersion,
+                coalesce((select sum(g.configVersion) from Device x join x.groups g where x.id = d.id), 0))
+            from Device d
+            where exists (select 1 from Device m join m.groups mg where m.id = d.id and mg.id = :groupId)
+            order by d.id""")
+    List<ConfigVersionDto> findConfigVersionsByGroup(@Param("groupId") Long groupId);
+
+    @Query("select g.id from Device d join d.groups g where d.id = :id order by g.id")
+    List<Long> findGroupIdsById(@Param("id") Long id);
+
+    @Query("select d.deviceToken from Device d where d.id = :id")
+    Optional<String> findDeviceTokenById(@Param("id") Long id);
+
+    /**
+     * Lists devices of an owner after a given ID, as summaries.
+     * <p>
+     * Walks the (user_id, id) index from the keyset position and counts
+     * messages per returned row only, so the cost depends on the limit and
+     * not on the size of the fleet.
+     *
+     * @param username the owner's username
+     * @param afterId  only devices with a greater ID are returned
+     * @param pattern  LIKE pattern matched against the lower-cased name, escaped with {@code !}
+     * @param limit    maximum number of rows
+     * @return summaries ordered by ID
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.DeviceSummaryDto(
+                d.id, d.name, d.updateIntervalSeconds, d.rotateIntervalSeconds,
+                d.configVersion + coalesce((select sum(g.configVersion) from Device x join x.groups g where x.id = d.id), 0),
+                (select count(m) from DisplayMessage m where m.device = d),
+                d.configChangedAt)
+            from Device d
+            where d.owner.username = :username
+              and d.id > :afterId
+              and lower(d.name) like :pattern escape '!'
+            order by d.id""")
+    List<DeviceSummaryDto> findSummaries(@Param("username") String username,
+                                         @Param("afterId") long afterId,
+                                         @Param("pattern") String pattern,
+                                         Limit limit);
+
+    /**
+     * Lists the IDs of an owner's devices whose names match a pattern.
+     *
+     * @param username the owner's username
+     * @param pattern  LIKE pattern matched against the lower-cased name, escaped with {@code !}
+     * @return matching device IDs in ascending order
+     */
+    @Query("""
+            select d.id from Device d
+            where d.owner.username = :username
+              and lower(d.name) like :pattern escape '!'
+            order by d.id""")
+    List<Long> findIdsByOwnerAndName(@Param("username") String username,
+                                     @Param("pattern") String pattern);
 }
\ No newline at end of file
@@ -1,8 +1,23 @@
 package com.lorenz.esignagep32.repository;
 
+import com.lorenz.esignagep32.dto.ScheduledMessageDto;
 import com.lorenz.esignagep32.model.DisplayMessage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface DisplayMessageRepository extends JpaRepository<DisplayMessage, Long> {
 
-}
\ No newline at end of file
+    /**
+     * Lists all messages with a schedule, without loading their entities.
+     *
+     * @return the scheduled messages with their devices and owners
+     */
+    @Query("""
+            select new com.lorenz.esignagep32.dto.ScheduledMessageDto(
+                m.id, d.id, o.username, d.configChangedAt, m.schedule)
+            from DisplayMessage m join m.device d join d.owner o
+            where m.schedule is not null""")
+    List<ScheduledMessageDto> findScheduled();
+}
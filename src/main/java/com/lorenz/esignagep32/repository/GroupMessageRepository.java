@@ -0,0 +1,11 @@
+package com.lorenz.esignagep32.repository;
+
+import com.lorenz.esignagep32.model.GroupMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface GroupMessageRepository extends JpaRepository<GroupMessage, Long> {
+
+    List<GroupMessage> findByGroupIdOrderById(Long groupId);
+}
@@ -0,0 +1,7 @@
+package com.lorenz.esignagep32.repository;
+
+import com.lorenz.esignagep32.model.RevokedDeviceToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface RevokedDeviceTokenRepository extends JpaRepository<RevokedDeviceToken, Long> {
+}
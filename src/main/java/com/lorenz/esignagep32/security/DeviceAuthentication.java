@@ -0,0 +1,45 @@
+package com.lorenz.esignagep32.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+/**
+ * Authentication of a device that presented a valid device token.
+ * <p>
+ * The principal is the device ID; the token itself is not retained.
+ */
+public class DeviceAuthentication extends AbstractAuthenticationToken {
+
+    /**
+     * Authority granted to every authenticated device.
+     */
+    public static final String ROLE_DEVICE = "ROLE_DEVICE";
+
+    private static final List<GrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority(ROLE_DEVICE));
+
+    private final long deviceId;
+
+    /**
+     * Creates an authenticated token for a device.
+     *
+     * @param deviceId the ID of the authenticated device
+     */
+    public DeviceAuthentication(long deviceId) {
+        super(AUTHORITIES);
+        this.deviceId = deviceId;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public Long getPrincipal() {
+        return deviceId;
+    }
+}
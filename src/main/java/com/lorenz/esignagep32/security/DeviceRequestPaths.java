@@ -0,0 +1,36 @@
+package com.lorenz.esignagep32.security;
+
+/**
+ * Parses the device ID out of device API paths such as
+ * /api/config/42/watch or /api/frames/42, without allocating.
+ */
+public final class DeviceRequestPaths {
+
+    private DeviceRequestPaths() {
+    }
+
+    /**
+     * Extracts the device ID following the API prefix, e.g. 42 from
+     * /api/config/42/watch.
+     *
+     * @param uri the request URI
+     * @return the device ID, or -1 if the path does not hold one
+     */
+    public static long deviceId(String uri) {
+        // Skip "/api/<resource>/"
+        int start = uri.indexOf('/', uri.indexOf('/', 1) + 1) + 1;
+        if (start <= 0) {
+            return -1;
+        }
+        long id = 0;
+        int i = start;
+        for (; i < uri.length() && uri.charAt(i) != '/'; i++) {
+            char c = uri.charAt(i);
+            if (c < '0' || c > '9' || i - start >= 18) {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return i > start ? id : -1;
+    }
+}
@@ -0,0 +1,79 @@
+package com.lorenz.esignagep32.security;
+
+import com.lorenz.esignagep32.service.DeviceTokenVerifier;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates device API requests by the X-Device-Token header.
+ * <p>
+ * The token must belong to the device whose ID appears in the request
+ * path. On success the request is authenticated as a
+ * {@link DeviceAuthentication} for its duration only; nothing is stored
+ * in a session. Requests without a valid token stay unauthenticated and
+ * are rejected by authorization.
+ */
+public class DeviceTokenAuthenticationFilter extends OncePerRequestFilter {
+
+    /**
+     * Header carrying the device token.
+     */
+    public static final String DEVICE_TOKEN_HEADER = "X-Device-Token";
+
+    // Request attribute holding the outcome of the token check, so it runs once per request
+    private static final String VERIFIED_ATTRIBUTE = DeviceTokenAuthenticationFilter.class.getName() + ".VERIFIED";
+
+    private final DeviceTokenVerifier tokenVerifier;
+    private final SecurityContextHolderStrategy contextHolder = SecurityContextHolder.getContextHolderStrategy();
+
+    /**
+     * Creates the filter.
+     *
+     * @param tokenVerifier verifier of device tokens
+     */
+    public DeviceTokenAuthenticationFilter(DeviceTokenVerifier tokenVerifier) {
+        this.tokenVerifier = tokenVerifier;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+
+        long deviceId = DeviceRequestPaths.deviceId(request.getRequestURI());
+        if (verify(request, tokenVerifier)) {
+            SecurityContext context = contextHolder.createEmptyContext();
+            context.setAuthentication(new DeviceAuthentication(deviceId));
+            contextHolder.setContext(context);
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Checks the token of a device API request against the device ID in
+     * its path. The outcome is kept in the request, so filters in front of
+     * this one, like the rate limit, can share a single check.
+     *
+     * @param request       the device API request
+     * @param tokenVerifier verifier of device tokens
+     * @return true if the request carries the token of the device in its path
+     */
+    public static boolean verify(HttpServletRequest request, DeviceTokenVerifier tokenVerifier) {
+        if (request.getAttribute(VERIFIED_ATTRIBUTE) instanceof Boolean verified) {
+            return verified;
+        }
+        long deviceId = DeviceRequestPaths.deviceId(request.getRequestURI());
+        boolean verified = deviceId >= 0
+                && tokenVerifier.verify(deviceId, request.getHeader(DEVICE_TOKEN_HEADER));
+        request.setAttribute(VERIFIED_ATTRIBUTE, verified);
+        return verified;
+    }
+}
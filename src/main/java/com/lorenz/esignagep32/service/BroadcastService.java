@@ -0,0 +1,238 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.BroadcastDto;
+import com.lorenz.esignagep32.dto.BroadcastStatusDto;
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.repository.DeviceRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the same message to many devices of a user in the background.
+ * <p>
+ * Matching devices are processed in batches, each in one transaction of
+ * three JDBC round trips: a batch of version increments, which also locks
+ * the rows and reveals devices deleted meanwhile, a batch of message
+ * inserts returning their generated IDs, and one query for the new
+ * versions. Every device thus gets exactly one configuration version for
+ * the broadcast, announced with its message ID like a single added message.
+ * The snapshot caches, change logs and watchers need those per device; the
+ * {@link FleetEventHub} coalesces them, so an open device list receives at
+ * most one event per device it shows, however large the batch.
+ * <p>
+ * Progress is kept in memory and can be queried by ID until
+ * {@code esp32.broadcast.retention-minutes} after the broadcast finished.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BroadcastService {
+
+    private static final int MAX_TEXT_LENGTH = 512;
+
+    private static final String BUMP_SQL =
+            "UPDATE devices SET config_version = config_version + 1, config_changed_at = ? WHERE id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO messages (device_id, text, font_size, scroll) VALUES (?, ?, ?, ?)";
+
+    private final DeviceRepository deviceRepo;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final ApplicationEventPublisher events;
+
+    @Value("${esp32.broadcast.batch-size:500}")
+    private int batchSize;              // Devices per transaction
+
+    @Value("${esp32.broadcast.retention-minutes:60}")
+    private long retentionMinutes;      // How long finished broadcasts can be queried
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Starts adding a message to all devices of the user matching the search.
+     *
+     * @param username the owner's username
+     * @param request  the message and the device filter
+     * @return the initial status, holding the ID to query progress with
+     */
+    public BroadcastStatusDto start(String username, BroadcastDto request) {
+        String text = request.getText();
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Broadcast text must not be empty");
+        }
+        if (text.length() > MAX_TEXT_LENGTH) {
+            throw new IllegalArgumentException("Broadcast text exceeds " + MAX_TEXT_LENGTH + " characters");
+        }
+        pruneFinished();
+
+        List<Long> deviceIds = deviceRepo.findIdsByOwnerAndName(username,
+                DeviceService.namePattern(request.getSearch()));
+        Job job = new Job(UUID.randomUUID().toString(), username, deviceIds.size());
+        jobs.put(job.id, job);
+        log.info("Broadcast {} of user {} to {} devices", job.id, username, deviceIds.size());
+        executor.execute(() -> run(job, deviceIds, request));
+        return job.status();
+    }
+
+    /**
+     * Returns the progress of a broadcast.
+     *
+     * @param username the user asking, who must have started the broadcast
+     * @param id       the ID of the broadcast
+     * @return the current status
+     */
+    public BroadcastStatusDto status(String username, String id) {
+        Job job = jobs.get(id);
+        if (job == null || !job.username.equals(username)) {
+            throw new IllegalArgumentException("Broadcast not found: " + id);
+        }
+        return job.status();
+    }
+
+    /**
+     * Processes all batches of a broadcast, stopping at the first failure.
+     * Batches committed before a failure stay delivered.
+     */
+    private void run(Job job, List<Long> deviceIds, BroadcastDto request) {
+        try {
+            for (int from = 0; from < deviceIds.size(); from += batchSize) {
+                List<Long> batch = deviceIds.subList(from, Math.min(from + batchSize, deviceIds.size()));
+                Integer delivered = transactions.execute(tx -> deliver(job.username, batch, request));
+                job.delivered += delivered == null ? 0 : delivered;
+                job.processed += batch.size();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Broadcast {} stopped after {} of {} devices", job.id, job.processed, job.total, e);
+            job.error = e.getMessage();
+        } finally {
+            job.finishedAt = Instant.now();
+        }
+    }
+
+    /**
+     * Adds the message to one batch of devices within the current transaction.
+     *
+     * @return the number of devices that still existed and received the message
+     */
+    private int deliver(String username, List<Long> batch, BroadcastDto request) {
+        Timestamp now = Timestamp.from(Instant.now());
+        int[] bumped = jdbc.batchUpdate(BUMP_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setTimestamp(1, now);
+                ps.setLong(2, batch.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return batch.size();
+            }
+        });
+        // Devices deleted since the IDs were listed update no row; their rows would violate the foreign key
+        List<Long> targets = new ArrayList<>(batch.size());
+        for (int i = 0; i < bumped.length; i++) {
+            if (bumped[i] != 0) {
+                targets.add(batch.get(i));
+            }
+        }
+        if (targets.isEmpty()) {
+            return 0;
+        }
+
+        GeneratedKeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(
+                con -> con.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, targets.get(i));
+                        ps.setString(2, request.getText());
+                        ps.setInt(3, request.getFontSize());
+                        ps.setBoolean(4, request.isScroll());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return targets.size();
+                    }
+                },
+                keys);
+        List<Map<String, Object>> messageIds = keys.getKeyList();
+
+        Map<Long, ConfigVersionDto> versions = new HashMap<>(targets.size() * 2);
+        for (ConfigVersionDto version : deviceRepo.findConfigVersions(targets)) {
+            versions.put(version.getDeviceId(), version);
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            Long deviceId = targets.get(i);
+            // Generated keys come back in batch order, one single-column row per insert
+            long messageId = ((Number) messageIds.get(i).values().iterator().next()).longValue();
+            ConfigVersionDto version = versions.get(deviceId);
+            events.publishEvent(new ConfigChangedEvent(deviceId, username, version.getVersion(),
+                    version.getDeviceVersion(), false, ConfigChange.messageAdded(messageId)));
+        }
+        return targets.size();
+    }
+
+    /**
+     * Forgets broadcasts finished longer than the retention period ago.
+     */
+    private void pruneFinished() {
+        Instant cutoff = Instant.now().minusSeconds(TimeUnit.MINUTES.toSeconds(retentionMinutes));
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Progress of one broadcast. Written by its worker thread only.
+     */
+    private static final class Job {
+        final String id;
+        final String username;
+        final int total;
+        volatile int processed;
+        volatile int delivered;
+        volatile String error;
+        volatile Instant finishedAt;
+
+        Job(String id, String username, int total) {
+            this.id = id;
+            this.username = username;
+            this.total = total;
+        }
+
+        BroadcastStatusDto status() {
+            return new BroadcastStatusDto(id, total, processed, delivered, finishedAt != null, error);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.ConfigDeltaDto;
+import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory per-device log of recent configuration changes, used to send
+ * devices a delta instead of their full configuration.
+ * <p>
+ * Every version bump records exactly one change, so a device log is a
+ * contiguous run of versions above its floor. Logs are compacted by
+ * dropping the oldest entries and raising the floor; devices older than
+ * the floor, or whose history was lost on restart, get a reset instead.
+ * <p>
+ * Group playlist changes raise the served version of all members without
+ * an entry here, which leaves a gap; like membership changes, they are
+ * answered with a reset.
+ */
+@Component
+public class ConfigChangeLog {
+
+    @Value("${esp32.delta.max-entries:64}")
+    private int maxEntries;             // Changes retained per device
+
+    private final Map<Long, DeviceLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Appends a committed change to the log of its device.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            logs.remove(event.deviceId());
+            return;
+        }
+        logs.computeIfAbsent(event.deviceId(), id -> new DeviceLog(event.version() - 1))
+                .append(event.version(), event.change(), maxEntries);
+    }
+
+    /**
+     * Computes the delta from a version held by the device to the snapshot.
+     *
+     * @param snapshot the current configuration of the device
+     * @param since    the version the device already holds
+     * @return the delta, marked as reset if it cannot be reconstructed
+     */
+    public ConfigDeltaDto delta(ConfigSnapshot snapshot, long since) {
+        DeviceLog log = logs.get(snapshot.deviceId());
+        List<ConfigChange> changes = log == null ? null : log.between(since, snapshot.version());
+        if (changes == null || changes.stream().anyMatch(c -> c.type() == ConfigChange.Type.GROUPS_CHANGED)) {
+            return reset(snapshot.config(), since);
+        }
+        return fold(snapshot.config(), since, changes);
+    }
+
+    /**
+     * Folds a run of changes into added and removed messages. A message
+     * added and removed again within the run is left out entirely.
+     */
+    private static ConfigDeltaDto fold(ConfigDto config, long since, List<ConfigChange> changes) {
+        Set<Long> added = new LinkedHashSet<>();
+        Set<Long> removed = new LinkedHashSet<>();
+        boolean settingsChanged = false;
+        for (ConfigChange change : changes) {
+            switch (change.type()) {
+                case MESSAGE_ADDED -> added.add(change.messageId());
+                case MESSAGE_REMOVED -> {
+                    if (!added.remove(change.messageId())) {
+                        removed.add(change.messageId());
+                    }
+                }
+                case SETTINGS_CHANGED -> settingsChanged = true;
+            }
+        }
+
+        ConfigDeltaDto delta = new ConfigDeltaDto();
+        delta.setFromVersion(since);
+        delta.setToVersion(config.getConfigVersion());
+        if (settingsChanged) {
+            delta.setUpdateIntervalSeconds(config.getUpdateIntervalSeconds());
+            delta.setRotateIntervalSeconds(config.getRotateIntervalSeconds());
+        }
+        delta.setAdded(config.getMessages().stream()
+                .filter(m -> added.contains(m.getId()))
+                .toList());
+        delta.setRemoved(new ArrayList<>(removed));
+        return delta;
+    }
+
+    /**
+     * Builds a delta that replaces everything the device holds.
+     */
+    private static ConfigDeltaDto reset(ConfigDto config, long since) {
+        ConfigDeltaDto delta = new ConfigDeltaDto();
+        delta.setFromVersion(since);
+        delta.setToVersion(config.getConfigVersion());
+        delta.setReset(true);
+        delta.setUpdateIntervalSeconds(config.getUpdateIntervalSeconds());
+        delta.setRotateIntervalSeconds(config.getRotateIntervalSeconds());
+        delta.setAdded(List.copyOf(config.getMessages()));
+        delta.setRemoved(List.of());
+        return delta;
+    }
+
+    /**
+     * Contiguous run of changes for versions {@code floor + 1 .. floor + entries.size()}.
+     */
+    private static final class DeviceLog {
+
+        private final ArrayDeque<ConfigChange> entries = new ArrayDeque<>();
+        private long floor;
+
+        DeviceLog(long floor) {
+            this.floor = floor;
+        }
+
+        synchronized void append(long version, ConfigChange change, int maxEntries) {
+            long last = floor + entries.size();
+            if (version <= last) {
+                // Already covered, e.g. a change that arrived out of order after a gap
+                return;
+            }
+            if (version != last + 1) {
+                // Missing history: nothing below this version can be diffed any more
+                entries.clear();
+                floor = version - 1;
+            }
+            entries.addLast(change);
+            while (entries.size() > maxEntries) {
+                entries.removeFirst();
+                floor++;
+            }
+        }
+
+        /**
+         * Returns the changes in {@code (since, version]}, or null if the log
+         * does not cover that range exactly.
+         */
+        synchronized List<ConfigChange> between(long since, long version) {
+            long last = floor + entries.size();
+            if (since < floor || since > version || version != last) {
+                return null;
+            }
+            List<ConfigChange> changes = new ArrayList<>((int) (version - since));
+            Iterator<ConfigChange> it = entries.iterator();
+            for (long v = floor + 1; v <= version; v++) {
+                ConfigChange change = it.next();
+                if (v > since) {
+                    changes.add(change);
+                }
+            }
+            return changes;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.lorenz.esignagep32.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lorenz.esignagep32.codec.ConfigBinaryCodec;
+import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.service.GroupPlaylistCache.GroupPlaylist;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Builds served configurations from a device's own configuration and the
+ * playlists of its groups.
+ * <p>
+ * Group playlists come from the {@link GroupPlaylistCache}, so composing
+ * only reads the database for playlists not in memory yet. Group messages
+ * are shown before the device's own, groups in ascending ID order.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConfigComposer {
+
+    private final GroupPlaylistCache groupCache;
+    private final ObjectMapper mapper;
+
+    /**
+     * Merges and encodes the configuration of a device.
+     * <p>
+     * Groups deleted meanwhile are left out; their deletion also changes
+     * the device, which replaces the snapshot soon after.
+     *
+     * @param deviceConfig  the device's own configuration and version
+     * @param ownerUsername the username of the device owner
+     * @param groupIds      the IDs of the device's groups in ascending order
+     * @return the snapshot of the served configuration
+     */
+    public ConfigSnapshot compose(ConfigDto deviceConfig, String ownerUsername, long[] groupIds) {
+        List<MessageDto> messages = new ArrayList<>();
+        long[] usedIds = new long[groupIds.length];
+        long[] usedVersions = new long[groupIds.length];
+        int used = 0;
+        long version = deviceConfig.getConfigVersion();
+        for (long groupId : groupIds) {
+            GroupPlaylist playlist = groupCache.get(groupId);
+            if (playlist == null) {
+                continue;
+            }
+            messages.addAll(playlist.messages());
+            usedIds[used] = groupId;
+            usedVersions[used] = playlist.version();
+            used++;
+            version += playlist.version();
+        }
+        messages.addAll(deviceConfig.getMessages());
+
+        ConfigDto dto = copyOf(deviceConfig);
+        dto.setConfigVersion(version);
+        dto.setMessages(messages);
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(dto);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize config of device " + dto.getDeviceId(), e);
+        }
+        return ConfigSnapshot.of(dto, ownerUsername, json, ConfigBinaryCodec.encode(dto), deviceConfig,
+                Arrays.copyOf(usedIds, used), Arrays.copyOf(usedVersions, used), settingsHash(dto));
+    }
+
+    /**
+     * Hashes the global settings of a configuration, which its version
+     * does not cover, into eight hex digits for the ETags.
+     */
+    static String settingsHash(ConfigDto dto) {
+        CRC32 crc = new CRC32();
+        for (String value : new String[]{dto.getWifiSsid(), dto.getWifiPassword(),
+                dto.getNtpServer(), dto.getServerDomain()}) {
+            if (value != null) {
+                crc.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            // Separator, so moving text between fields changes the hash
+            crc.update(0);
+        }
+        return HexFormat.of().toHexDigits((int) crc.getValue());
+    }
+
+    /**
+     * Rebuilds a snapshot with the current playlists of its groups,
+     * without reading the device from the database.
+     *
+     * @param snapshot a snapshot built from older group versions
+     * @return the rebuilt snapshot
+     */
+    public ConfigSnapshot recompose(ConfigSnapshot snapshot) {
+        return compose(snapshot.deviceConfig(), snapshot.ownerUsername(), snapshot.groupIds());
+    }
+
+    private static ConfigDto copyOf(ConfigDto source) {
+        ConfigDto dto = new ConfigDto();
+        dto.setWifiSsid(source.getWifiSsid());
+        dto.setWifiPassword(source.getWifiPassword());
+        dto.setNtpServer(source.getNtpServer());
+        dto.setServerDomain(source.getServerDomain());
+        dto.setDeviceId(source.getDeviceId());
+        dto.setDeviceToken(source.getDeviceToken());
+        dto.setUpdateIntervalSeconds(source.getUpdateIntervalSeconds());
+        dto.setRotateIntervalSeconds(source.getRotateIntervalSeconds());
+        return dto;
+    }
+}
@@ -0,0 +1,76 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.codec.SpiffsImageBuilder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Service producing the SPIFFS config.bin images flashed onto new devices.
+ * <p>
+ * Builds the formatted empty image once and keeps it as a read-only
+ * template. Only the leading block holding /config.json differs between
+ * devices, so a request copies and patches that block and shares the
+ * remaining megabytes of the template as a slice.
+ */
+@Service
+public class ConfigImageService {
+
+    private static final String CONFIG_FILE = "/config.json";
+
+    private final SpiffsImageBuilder builder = new SpiffsImageBuilder();
+    private final ByteBuffer template;  // Formatted empty image, never modified
+
+    public ConfigImageService() {
+        byte[] image = new byte[builder.imageSize()];
+        builder.format(image, 0);
+        this.template = ByteBuffer.wrap(image).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the size of the images produced.
+     *
+     * @return the image size in bytes
+     */
+    public int imageSize() {
+        return builder.imageSize();
+    }
+
+    /**
+     * Builds the image holding the given configuration file.
+     *
+     * @param configJson content of /config.json
+     * @return the patched leading blocks followed by a read-only slice of
+     *         the template; together they form the complete image
+     * @throws IllegalArgumentException if the file does not fit
+     */
+    public ByteBuffer[] buildImage(byte[] configJson) {
+        byte[] head = new byte[builder.blocksFor(configJson.length) * builder.blockSize()];
+        template.get(0, head);
+        builder.writeFile(head, CONFIG_FILE, configJson);
+        return new ByteBuffer[]{
+                ByteBuffer.wrap(head),
+                template.slice(head.length, template.capacity() - head.length)
+        };
+    }
+
+    /**
+     * Writes the image holding the given configuration file.
+     *
+     * @param configJson content of /config.json
+     * @param out        the stream to write {@link #imageSize()} bytes to
+     * @throws IOException if writing fails
+     */
+    public void writeImage(byte[] configJson, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        for (ByteBuffer part : buildImage(configJson)) {
+            while (part.hasRemaining()) {
+                channel.write(part);
+            }
+        }
+    }
+}
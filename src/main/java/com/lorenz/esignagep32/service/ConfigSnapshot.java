@@ -0,0 +1,173 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.ConfigDto;
+
+/**
+ * Immutable in-memory view of the configuration last served to a device.
+ * <p>
+ * Holds everything needed to answer a poll without touching the database:
+ * the configuration version and the ready-to-write JSON and binary
+ * payloads. Payloads must not be modified. Device tokens are checked
+ * beforehand by {@link DeviceTokenVerifier}.
+ * <p>
+ * The served configuration merges the playlists of the device's groups
+ * into its own configuration. Both parts are kept, together with the
+ * group versions used, so that {@link ConfigComposer} can rebuild the
+ * snapshot from memory after a group changed.
+ * <p>
+ * The Wi-Fi, NTP and server domain settings come from the application
+ * properties and are not versioned, so ETags also carry a short hash of
+ * them: changing one and restarting answers every device with the new
+ * configuration even though its version stayed the same.
+ *
+ * @param deviceId      the ID of the device
+ * @param ownerUsername the username of the device owner, null for an outdated placeholder
+ * @param version       the served configuration version, the device version plus all group versions
+ * @param deviceVersion the version of the device's own configuration
+ * @param config        the configuration the payload was serialized from, null for an outdated placeholder
+ * @param json          the JSON serialization of the configuration
+ * @param binary        the compact binary encoding of the configuration
+ * @param deviceConfig  the device's own configuration without group messages
+ * @param groupIds      the IDs of the device's groups, in playlist order
+ * @param groupVersions the playlist version of each group used for {@code config}
+ * @param settingsHash  hash of the global settings in {@code config}, null for an outdated placeholder
+ */
+public record ConfigSnapshot(Long deviceId,
+                             String ownerUsername,
+                             long version,
+                             long deviceVersion,
+                             ConfigDto config,
+                             byte[] json,
+                             byte[] binary,
+                             ConfigDto deviceConfig,
+                             long[] groupIds,
+                             long[] groupVersions,
+                             String settingsHash) {
+
+    private static final long[] NO_GROUPS = new long[0];
+
+    /**
+     * Creates a snapshot from a freshly merged and encoded configuration.
+     *
+     * @param dto           the served configuration of the device
+     * @param ownerUsername the username of the device owner
+     * @param json          the JSON serialization of the configuration
+     * @param binary        the binary encoding of the configuration
+     * @param deviceConfig  the device's own configuration
+     * @param groupIds      the IDs of the device's groups
+     * @param groupVersions the playlist versions merged into {@code dto}
+     * @param settingsHash  hash of the global settings in {@code dto}
+     * @return the snapshot describing the configuration
+     */
+    public static ConfigSnapshot of(ConfigDto dto, String ownerUsername, byte[] json, byte[] binary,
+                                    ConfigDto deviceConfig, long[] groupIds, long[] groupVersions,
+                                    String settingsHash) {
+        return new ConfigSnapshot(dto.getDeviceId(),
+                ownerUsername,
+                dto.getConfigVersion(),
+                deviceConfig.getConfigVersion(),
+                dto,
+                json,
+                binary,
+                deviceConfig,
+                groupIds,
+                groupVersions,
+                settingsHash);
+    }
+
+    /**
+     * Creates a placeholder marking every version below the given one as outdated.
+     *
+     * @param deviceId      the ID of the device
+     * @param version       the first served version that may be cached again
+     * @param deviceVersion the first device version that may be cached again
+     * @return the placeholder snapshot
+     */
+    public static ConfigSnapshot outdated(Long deviceId, long version, long deviceVersion) {
+        return new ConfigSnapshot(deviceId, null, version, deviceVersion, null, null, null,
+                null, NO_GROUPS, NO_GROUPS, null);
+    }
+
+    /**
+     * Indicates whether the snapshot merged the given group.
+     *
+     * @param groupId the ID of the group
+     * @return true if the group's playlist is part of the configuration
+     */
+    public boolean hasGroup(long groupId) {
+        for (long id : groupIds) {
+            if (id == groupId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether this is a placeholder without payload.
+     *
+     * @return true if the snapshot only records a version lower bound
+     */
+    public boolean isOutdated() {
+        return config == null;
+    }
+
+    /**
+     * Returns the strong ETag of the JSON representation.
+     *
+     * @return the quoted ETag value
+     */
+    public String etag() {
+        return etagOf("");
+    }
+
+    /**
+     * Returns the strong ETag of the binary representation, which must
+     * differ from the JSON one for the same version.
+     *
+     * @return the quoted ETag value
+     */
+    public String binaryEtag() {
+        return etagOf("-bin");
+    }
+
+    /**
+     * Returns the strong ETag of the pre-rendered frames.
+     *
+     * @return the quoted ETag value
+     */
+    public String framesEtag() {
+        return etagOf("-frames");
+    }
+
+    private String etagOf(String representation) {
+        return "\"" + version + "-" + settingsHash + representation + "\"";
+    }
+
+    /**
+     * Checks whether an If-None-Match header value covers the given ETag.
+     *
+     * @param ifNoneMatch the raw header value, may be null
+     * @param etag        the quoted ETag of the current configuration
+     * @return true if the client already holds the current configuration
+     */
+    public static boolean isNotModified(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            // Weak comparison is sufficient for GET requests
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
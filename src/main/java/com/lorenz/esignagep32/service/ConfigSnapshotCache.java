@@ -0,0 +1,154 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of the configuration snapshots last served to devices.
+ * <p>
+ * Lets polls be answered with a single hash lookup. Entries are
+ * only ever replaced by snapshots of an equal or newer version, so a reader
+ * that loaded an old configuration concurrently with a change can never
+ * overwrite the newer state.
+ * <p>
+ * Group changes do not touch the entries of member devices. A lookup
+ * compares the group versions an entry was built from with the
+ * {@link GroupPlaylistCache} and rebuilds an outdated entry in memory.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConfigSnapshotCache {
+
+    private final GroupPlaylistCache groupCache;
+    private final ConfigComposer composer;
+
+    private final Map<Long, ConfigSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the cached snapshot for the device.
+     *
+     * @param deviceId the ID of the device
+     * @return the snapshot, or null if none is cached or it is outdated
+     */
+    public ConfigSnapshot get(Long deviceId) {
+        ConfigSnapshot snapshot = snapshots.get(deviceId);
+        if (snapshot == null || snapshot.isOutdated()) {
+            misses.increment();
+            return null;
+        }
+        boolean groupsChanged = false;
+        for (int i = 0; i < snapshot.groupIds().length; i++) {
+            long current = groupCache.version(snapshot.groupIds()[i]);
+            if (current < 0) {
+                // Group deleted: the membership must be read again
+                misses.increment();
+                return null;
+            }
+            groupsChanged |= current != snapshot.groupVersions()[i];
+        }
+        if (groupsChanged) {
+            snapshot = composer.recompose(snapshot);
+            put(snapshot);
+        }
+        hits.increment();
+        return snapshot;
+    }
+
+    /**
+     * Indicates whether the cached configuration of a device includes a group.
+     *
+     * @param deviceId the ID of the device
+     * @param groupId  the ID of the group
+     * @return true if a snapshot built with the group's playlist is cached
+     */
+    public boolean usesGroup(Long deviceId, long groupId) {
+        ConfigSnapshot snapshot = snapshots.get(deviceId);
+        return snapshot != null && snapshot.hasGroup(groupId);
+    }
+
+    /**
+     * Returns how many lookups found a current snapshot.
+     *
+     * @return the number of hits since startup
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lookups had to fall back to the database.
+     *
+     * @return the number of misses since startup
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the newest configuration version known for the device,
+     * including versions whose snapshot has not been loaded yet.
+     *
+     * @param deviceId the ID of the device
+     * @return the newest known version, or -1 if nothing is known
+     */
+    public long latestVersion(Long deviceId) {
+        ConfigSnapshot snapshot = snapshots.get(deviceId);
+        if (snapshot == null) {
+            return -1;
+        }
+        long groupChanges = 0;
+        for (int i = 0; i < snapshot.groupIds().length; i++) {
+            groupChanges += Math.max(0, groupCache.version(snapshot.groupIds()[i]) - snapshot.groupVersions()[i]);
+        }
+        return snapshot.version() + groupChanges;
+    }
+
+    /**
+     * Stores a snapshot unless a newer version is already known.
+     * <p>
+     * The device's own version decides first, so a snapshot rebuilt for
+     * newer groups cannot hide a newer device change.
+     *
+     * @param snapshot the snapshot to store
+     */
+    public void put(ConfigSnapshot snapshot) {
+        snapshots.merge(snapshot.deviceId(), snapshot, (current, candidate) ->
+                candidate.deviceVersion() > current.deviceVersion()
+                        || candidate.deviceVersion() == current.deviceVersion()
+                        && candidate.version() >= current.version()
+                        ? candidate : current);
+    }
+
+    /**
+     * Drops outdated snapshots once a configuration change has been committed.
+     * <p>
+     * Only the entry of the affected device is touched. A placeholder keeps
+     * the new version as a lower bound, so snapshots loaded before the
+     * commit are rejected by {@link #put}. Runs before the other listeners,
+     * so the {@link ConfigWatchHub} never dispatches the replaced snapshot.
+     *
+     * @param event the committed change
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            snapshots.remove(event.deviceId());
+            return;
+        }
+        snapshots.compute(event.deviceId(), (id, current) ->
+                current != null && current.deviceVersion() >= event.deviceVersion()
+                        ? current
+                        : ConfigSnapshot.outdated(id, event.version(), event.deviceVersion()));
+    }
+}
@@ -0,0 +1,167 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.GroupChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Registry of devices waiting for their configuration to change.
+ * <p>
+ * Waiters are plain callbacks; no thread is held while a device waits.
+ * When a change is committed, the new snapshot is loaded once on a
+ * virtual thread and handed to every waiter of that device whose known
+ * version is older.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfigWatchHub {
+
+    private final ConfigSnapshotCache snapshotCache;
+    private final DeviceService deviceService;
+
+    private final Map<Long, Set<Watch>> watches = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Registers a callback for the next configuration version after {@code since}.
+     * <p>
+     * The callback is invoked at most once, with the new snapshot, or with
+     * null if the device has been deleted.
+     *
+     * @param deviceId the ID of the device
+     * @param since    the version the device already holds
+     * @param onChange callback receiving the newer snapshot
+     * @return handle that cancels the registration, e.g. on timeout
+     */
+    public Runnable watch(Long deviceId, long since, Consumer<ConfigSnapshot> onChange) {
+        Watch watch = new Watch(since, onChange);
+        watches.computeIfAbsent(deviceId, id -> ConcurrentHashMap.newKeySet()).add(watch);
+        active.incrementAndGet();
+
+        // A change committed before the registration would otherwise be missed
+        if (snapshotCache.latestVersion(deviceId) > since) {
+            dispatch(deviceId, false);
+        }
+        return () -> remove(deviceId, watch);
+    }
+
+    /**
+     * Returns the number of device requests currently waiting.
+     *
+     * @return the number of registered watches
+     */
+    public int activeWatches() {
+        return active.get();
+    }
+
+    /**
+     * Wakes up the waiters of a device once its change has been committed.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (watches.containsKey(event.deviceId())) {
+            dispatch(event.deviceId(), event.deleted());
+        }
+    }
+
+    /**
+     * Wakes up the waiters of every device whose snapshot was built from
+     * the changed group playlist. Deleting a group changes each member
+     * device itself, which is announced separately.
+     *
+     * @param event the committed playlist change
+     */
+    @TransactionalEventListener
+    public void onGroupChanged(GroupChangedEvent event) {
+        if (event.deleted()) {
+            return;
+        }
+        for (Long deviceId : watches.keySet()) {
+            if (snapshotCache.usesGroup(deviceId, event.groupId())) {
+                dispatch(deviceId, false);
+            }
+        }
+    }
+
+    /**
+     * Loads the current snapshot in a fresh transaction and completes all
+     * waiters that hold an older version.
+     */
+    private void dispatch(Long deviceId, boolean deleted) {
+        executor.execute(() -> {
+            Set<Watch> waiting = watches.get(deviceId);
+            if (waiting == null || waiting.isEmpty()) {
+                return;
+            }
+            ConfigSnapshot snapshot = null;
+            if (!deleted) {
+                try {
+                    snapshot = snapshotCache.get(deviceId);
+                    if (snapshot == null) {
+                        snapshot = deviceService.loadConfigSnapshot(deviceId);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Device vanished between the change and this load
+                    snapshot = null;
+                } catch (RuntimeException e) {
+                    log.warn("Cannot load config of device {} for waiting watches", deviceId, e);
+                    return;
+                }
+            }
+            for (Watch watch : waiting) {
+                if (snapshot == null || snapshot.version() > watch.since()) {
+                    remove(deviceId, watch);
+                    watch.complete(snapshot);
+                }
+            }
+        });
+    }
+
+    private void remove(Long deviceId, Watch watch) {
+        watches.computeIfPresent(deviceId, (id, set) -> {
+            if (set.remove(watch)) {
+                // Both timeout and completion remove a watch; count it once
+                active.decrementAndGet();
+            }
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A single waiting device request.
+     */
+    private record Watch(long since, Consumer<ConfigSnapshot> onChange, AtomicBoolean done) {
+
+        Watch(long since, Consumer<ConfigSnapshot> onChange) {
+            this(since, onChange, new AtomicBoolean());
+        }
+
+        void complete(ConfigSnapshot snapshot) {
+            if (done.compareAndSet(false, true)) {
+                onChange.accept(snapshot);
+            }
+        }
+    }
+}
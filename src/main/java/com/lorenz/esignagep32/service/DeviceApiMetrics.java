@@ -0,0 +1,134 @@
+package com.lorenz.esignagep32.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the device and provisioning paths.
+ * <p>
+ * All meters are registered once up front, so recording on a hot path is
+ * a few atomic additions without registry lookups. Latencies are published
+ * with percentile histograms for aggregation across instances.
+ */
+@Component
+public class DeviceApiMetrics {
+
+    // Config polls by response status (200, 304) and encoding (json, binary)
+    private final Timer configOkJson;
+    private final Timer configOkBinary;
+    private final Timer configNotModifiedJson;
+    private final Timer configNotModifiedBinary;
+    private final DistributionSummary configPayloadJson;
+    private final DistributionSummary configPayloadBinary;
+
+    // Loading a configuration from the database on a snapshot cache miss
+    private final Timer snapshotLoad;
+    private final DistributionSummary snapshotMessages;
+
+    // Provisioning
+    private final Timer configImageBuild;
+    private final DistributionSummary configImageSize;
+    private final Timer setupGenerate;
+
+    public DeviceApiMetrics(MeterRegistry registry) {
+        this.configOkJson = configTimer(registry, "200", "json");
+        this.configOkBinary = configTimer(registry, "200", "binary");
+        this.configNotModifiedJson = configTimer(registry, "304", "json");
+        this.configNotModifiedBinary = configTimer(registry, "304", "binary");
+        this.configPayloadJson = payloadSummary(registry, "json");
+        this.configPayloadBinary = payloadSummary(registry, "binary");
+
+        this.snapshotLoad = Timer.builder("esignage.config.load")
+                .description("Database time to load a device configuration and its messages")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.snapshotMessages = DistributionSummary.builder("esignage.config.messages")
+                .description("Messages per loaded device configuration")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        this.configImageBuild = Timer.builder("esignage.configbin.build")
+                .description("Time to generate the setup and write the config.bin image")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.configImageSize = DistributionSummary.builder("esignage.configbin.size")
+                .description("Size of served config.bin images")
+                .baseUnit("bytes")
+                .register(registry);
+        this.setupGenerate = Timer.builder("esignage.setup.generate")
+                .description("Time to create a device and its setup configuration")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Records an answered configuration poll.
+     *
+     * @param startNanos   {@link System#nanoTime()} when the request started
+     * @param notModified  whether 304 Not Modified was returned
+     * @param binary       whether the binary encoding was requested
+     * @param payloadBytes size of the body, 0 for 304
+     */
+    public void recordConfigPoll(long startNanos, boolean notModified, boolean binary, int payloadBytes) {
+        Timer timer = notModified
+                ? (binary ? configNotModifiedBinary : configNotModifiedJson)
+                : (binary ? configOkBinary : configOkJson);
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (!notModified) {
+            (binary ? configPayloadBinary : configPayloadJson).record(payloadBytes);
+        }
+    }
+
+    /**
+     * Records loading a device configuration from the database.
+     *
+     * @param startNanos {@link System#nanoTime()} when loading started
+     * @param messages   number of messages of the device
+     */
+    public void recordSnapshotLoad(long startNanos, int messages) {
+        snapshotLoad.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        snapshotMessages.record(messages);
+    }
+
+    /**
+     * Records serving a config.bin image.
+     *
+     * @param startNanos {@link System#nanoTime()} when the request started
+     * @param imageBytes size of the image written
+     */
+    public void recordConfigImage(long startNanos, long imageBytes) {
+        configImageBuild.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        configImageSize.record(imageBytes);
+    }
+
+    /**
+     * Records generating a setup configuration.
+     *
+     * @param startNanos {@link System#nanoTime()} when generation started
+     */
+    public void recordSetup(long startNanos) {
+        setupGenerate.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer configTimer(MeterRegistry registry, String status, String format) {
+        return Timer.builder("esignage.config.requests")
+                .description("Latency of configuration polls answered by the server")
+                .tag("status", status)
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static DistributionSummary payloadSummary(MeterRegistry registry, String format) {
+        return DistributionSummary.builder("esignage.config.payload")
+                .description("Size of configuration bodies sent to devices")
+                .baseUnit("bytes")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
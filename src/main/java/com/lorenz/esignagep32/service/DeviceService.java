@@ -1,19 +1,36 @@
 package com.lorenz.esignagep32.service;
 
 import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.dto.DevicePageDto;
+import com.lorenz.esignagep32.dto.DeviceSummaryDto;
 import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.dto.MessageScheduleDto;
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.DeviceCreatedEvent;
+import com.lorenz.esignagep32.event.MessageScheduleChangedEvent;
+import com.lorenz.esignagep32.jfr.ConfigLoadedEvent;
 import com.lorenz.esignagep32.model.Device;
 import com.lorenz.esignagep32.model.DisplayMessage;
+import com.lorenz.esignagep32.model.MessageSchedule;
 import com.lorenz.esignagep32.model.User;
 import com.lorenz.esignagep32.repository.DeviceRepository;
 import com.lorenz.esignagep32.repository.DisplayMessageRepository;
 import com.lorenz.esignagep32.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -29,6 +46,12 @@ public class DeviceService {
     private final DeviceRepository deviceRepo;
     private final DisplayMessageRepository msgRepo;
     private final UserRepository userRepo;
+    private final ConfigSnapshotCache snapshotCache;
+    private final SignedDeviceTokens signedTokens;
+    private final ApplicationEventPublisher events;
+    private final ConfigComposer composer;
+    private final DeviceApiMetrics metrics;
+    private final MessageTimeline timeline;
 
     @Value("${esp32.wifi.ssid}")
     private String globalSsid;
@@ -42,8 +65,14 @@ public class DeviceService {
     @Value("${server.domain}")
     private String serverDomain;
 
+    @Value("${app.devices.page-size:50}")
+    private int pageSize;               // Rows per page of the device list
+
     /**
      * Creates a new device for the given user with default settings.
+     * <p>
+     * The device token is a signed token if {@link SignedDeviceTokens} are
+     * enabled, otherwise a random UUID.
      *
      * @param username   the owner's username
      * @param deviceName the name to assign to the new device
@@ -60,7 +89,40 @@ public class DeviceService {
         device.setUpdateIntervalSeconds(60);
         device.setRotateIntervalSeconds(10);
         device.setDeviceToken(UUID.randomUUID().toString());
+        device.setConfigChangedAt(Instant.now());
+        device = deviceRepo.save(device);
+
+        if (signedTokens.isEnabled()) {
+            // Signed tokens embed the ID, which exists only once the device is saved
+            device.setDeviceToken(signedTokens.mint(device.getId(), device.getTokenGeneration()));
+        }
+        // Lets verifiers forget that the new ID was unknown
+        events.publishEvent(new DeviceCreatedEvent(device.getId(), username));
+        return device;
+    }
 
+    /**
+     * Replaces the token of a device, e.g. after it leaked. The previous
+     * token stops working once the transaction commits, so the device has
+     * to be provisioned with the new one.
+     * <p>
+     * A signed token is replaced by one of the next generation, and all
+     * earlier generations of the device are revoked; other devices and the
+     * signing key are not affected. A UUID token is replaced by a new
+     * UUID, or by a signed token if the scheme has been enabled since.
+     *
+     * @param deviceId the ID of the device
+     * @return the device holding its new token
+     */
+    public Device reissueToken(Long deviceId) {
+        Device device = findById(deviceId);
+        signedTokens.revoke(device, device.getTokenGeneration());
+        device.setTokenGeneration(device.getTokenGeneration() + 1);
+        device.setDeviceToken(signedTokens.isEnabled()
+                ? signedTokens.mint(device.getId(), device.getTokenGeneration())
+                : UUID.randomUUID().toString());
+        // Snapshots carry the token, and the event lets verifiers drop the old one
+        bumpConfigVersion(device, ConfigChange.tokenReissued());
         return deviceRepo.save(device);
     }
 
@@ -75,6 +137,43 @@ public class DeviceService {
         return deviceRepo.findByOwnerUsername(username);
     }
 
+    /**
+     * Retrieves one page of the devices owned by the specified user.
+     * <p>
+     * Runs a single query per page: one row more than the page size is
+     * fetched to learn whether another page follows.
+     *
+     * @param username the owner's username
+     * @param afterId  the ID the page starts after, null for the first page
+     * @param search   text the device name must contain, case-insensitively; null or blank for all
+     * @return the page with the ID to continue after
+     */
+    @Transactional(readOnly = true)
+    public DevicePageDto listDevicePage(String username, Long afterId, String search) {
+        List<DeviceSummaryDto> rows = deviceRepo.findSummaries(username,
+                afterId == null ? 0 : afterId, namePattern(search), Limit.of(pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new DevicePageDto(rows, null);
+        }
+        List<DeviceSummaryDto> page = rows.subList(0, pageSize);
+        return new DevicePageDto(page, page.getLast().getId());
+    }
+
+    /**
+     * Turns search text into a LIKE pattern for the name-matching queries
+     * of {@link DeviceRepository}.
+     */
+    static String namePattern(String search) {
+        if (search == null || search.isBlank()) {
+            return "%";
+        }
+        String escaped = search.strip().toLowerCase(Locale.ROOT)
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return "%" + escaped + "%";
+    }
+
     /**
      * Finds a device by its ID, throwing if not found.
      *
@@ -105,6 +204,7 @@ public class DeviceService {
         device.setName(name);
         device.setUpdateIntervalSeconds(updateIntervalSeconds);
         device.setRotateIntervalSeconds(rotateIntervalSeconds);
+        bumpConfigVersion(device, ConfigChange.settingsChanged());
         return deviceRepo.save(device);
     }
 
@@ -115,7 +215,10 @@ public class DeviceService {
      */
     public void deleteDevice(Long deviceId) {
         Device device = findById(deviceId);
+        signedTokens.revoke(device);
         deviceRepo.delete(device);
+        events.publishEvent(new ConfigChangedEvent(deviceId,
+                device.getOwner().getUsername(), device.getConfigVersion(), device.getConfigVersion(), true, null));
     }
 
     /**
@@ -131,13 +234,39 @@ public class DeviceService {
                                      String text,
                                      int fontSize,
                                      boolean scroll) {
-        Device device = deviceRepo.getReferenceById(deviceId);
+        return addMessage(deviceId, text, fontSize, scroll, null);
+    }
+
+    /**
+     * Adds a new display message to the device that is only shown as scheduled.
+     *
+     * @param deviceId the ID of the target device
+     * @param text     message text content
+     * @param fontSize font size multiplier
+     * @param scroll   scroll behavior flag
+     * @param schedule when the message is shown, null or empty to always show it
+     * @return the saved DisplayMessage entity
+     */
+    public DisplayMessage addMessage(Long deviceId,
+                                     String text,
+                                     int fontSize,
+                                     boolean scroll,
+                                     MessageScheduleDto schedule) {
+        Device device = findById(deviceId);
         DisplayMessage message = new DisplayMessage();
         message.setDevice(device);
         message.setText(text);
         message.setFontSize(fontSize);
         message.setScroll(scroll);
-        return msgRepo.save(message);
+        message.setSchedule(toSchedule(schedule));
+        DisplayMessage saved = msgRepo.save(message);
+        bumpConfigVersion(device, ConfigChange.messageAdded(saved.getId()));
+        if (saved.getSchedule() != null) {
+            // Filed on the timeline once committed, so a rollback leaves no boundary behind
+            events.publishEvent(new MessageScheduleChangedEvent(saved.getId(), deviceId,
+                    device.getOwner().getUsername(), saved.getSchedule()));
+        }
+        return saved;
     }
 
     /**
@@ -146,21 +275,152 @@ public class DeviceService {
      * @param messageId the ID of the message to remove
      */
     public void removeMessage(Long messageId) {
-        msgRepo.deleteById(messageId);
+        msgRepo.findById(messageId).ifPresent(message -> {
+            bumpConfigVersion(message.getDevice(), ConfigChange.messageRemoved(messageId));
+            msgRepo.delete(message);
+            if (message.getSchedule() != null) {
+                events.publishEvent(new MessageScheduleChangedEvent(messageId,
+                        message.getDevice().getId(), message.getDevice().getOwner().getUsername(), null));
+            }
+        });
+    }
+
+    /**
+     * Converts the schedule fields of the message form, interpreting them
+     * in the schedule zone.
+     */
+    private MessageSchedule toSchedule(MessageScheduleDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        MessageSchedule schedule = new MessageSchedule();
+        schedule.setValidFrom(toInstant(dto.getValidFrom()));
+        schedule.setValidUntil(toInstant(dto.getValidUntil()));
+        if (schedule.getValidFrom() != null && schedule.getValidUntil() != null
+                && !schedule.getValidUntil().isAfter(schedule.getValidFrom())) {
+            throw new IllegalArgumentException("Message must be valid until after it becomes valid");
+        }
+        int days = 0;
+        for (DayOfWeek day : dto.getDays() == null ? List.<DayOfWeek>of() : dto.getDays()) {
+            days |= MessageSchedule.dayBit(day);
+        }
+        schedule.setActiveDays(days == 0 || days == MessageSchedule.ALL_DAYS ? null : days);
+        schedule.setDailyStart(dto.getDailyStart());
+        schedule.setDailyEnd(dto.getDailyEnd());
+        boolean empty = schedule.getValidFrom() == null && schedule.getValidUntil() == null
+                && schedule.getActiveDays() == null
+                && schedule.getDailyStart() == null && schedule.getDailyEnd() == null;
+        return empty ? null : schedule;
+    }
+
+    private Instant toInstant(LocalDateTime local) {
+        return local == null ? null : local.atZone(timeline.zone()).toInstant();
     }
 
     /**
-     * Constructs a ConfigDto for the device with current settings and messages.
+     * Finds a display message of the given device, throwing if not found.
+     *
+     * @param deviceId  the ID of the device owning the message
+     * @param messageId the ID of the message to retrieve
+     * @return the DisplayMessage entity
+     */
+    @Transactional(readOnly = true)
+    public DisplayMessage findMessage(Long deviceId, Long messageId) {
+        return msgRepo.findById(messageId)
+                .filter(message -> message.getDevice().getId().equals(deviceId))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Message not found: " + messageId));
+    }
+
+    /**
+     * Returns the version served to the device: its own version plus those
+     * of its groups.
+     *
+     * @param deviceId the ID of the device
+     * @return the served configuration version
+     */
+    @Transactional(readOnly = true)
+    public long servedConfigVersion(Long deviceId) {
+        return deviceRepo.findConfigVersions(List.of(deviceId)).stream()
+                .findFirst()
+                .map(ConfigVersionDto::getVersion)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Device not found: " + deviceId));
+    }
+
+    /**
+     * Returns the served configuration versions of devices of a user.
+     *
+     * @param username  the owner's username
+     * @param deviceIds the IDs of the devices, null for all devices of the user
+     * @return one entry per matching device, ordered by ID
+     */
+    @Transactional(readOnly = true)
+    public List<ConfigVersionDto> servedConfigVersions(String username, Collection<Long> deviceIds) {
+        return deviceIds == null
+                ? deviceRepo.findConfigVersionsByOwner(username)
+                : deviceRepo.findConfigVersionsByOwner(username, deviceIds);
+    }
+
+    /**
+     * Returns the served configuration versions of the members of a group.
+     *
+     * @param groupId the ID of the group
+     * @return one entry per member device, ordered by ID
+     */
+    @Transactional(readOnly = true)
+    public List<ConfigVersionDto> servedConfigVersionsOfGroup(Long groupId) {
+        return deviceRepo.findConfigVersionsByGroup(groupId);
+    }
+
+    /**
+     * Increments the configuration version of the device and announces the
+     * change once the current transaction commits.
+     *
+     * @param device the device whose configuration changed
+     * @param change what the new version changes
+     */
+    private void bumpConfigVersion(Device device, ConfigChange change) {
+        // Atomic increment; the row lock serializes concurrent edits until commit
+        deviceRepo.incrementConfigVersion(device.getId(), Instant.now());
+        ConfigVersionDto version = deviceRepo.findConfigVersions(List.of(device.getId())).getFirst();
+        device.setConfigVersion(version.getDeviceVersion());
+        events.publishEvent(new ConfigChangedEvent(device.getId(), device.getOwner().getUsername(),
+                version.getVersion(), version.getDeviceVersion(), false, change));
+    }
+
+    /**
+     * Constructs a ConfigDto for the device with current settings and messages,
+     * including the messages of its groups.
      *
      * @param deviceId the ID of the device
      * @return ConfigDto containing network parameters, timing, and messages
      */
     @Transactional(readOnly = true)
     public ConfigDto getConfigDto(Long deviceId) {
+        long start = System.nanoTime();
         Device device = deviceRepo.findById(deviceId)
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Device not found: " + deviceId));
+        ConfigDto dto = compose(device).config();
+        metrics.recordSnapshotLoad(start, dto.getMessages().size());
+        return dto;
+    }
+
+    /**
+     * Merges the configuration of a loaded device with its group playlists.
+     */
+    private ConfigSnapshot compose(Device device) {
+        long[] groupIds = deviceRepo.findGroupIdsById(device.getId()).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        return composer.compose(toConfigDto(device), device.getOwner().getUsername(), groupIds);
+    }
 
+    /**
+     * Builds the ConfigDto of a loaded device from its own messages.
+     */
+    private ConfigDto toConfigDto(Device device) {
         ConfigDto dto = new ConfigDto();
         dto.setWifiSsid(globalSsid);
         dto.setWifiPassword(globalPassword);
@@ -168,12 +428,17 @@ public class DeviceService {
         dto.setServerDomain(serverDomain);
         dto.setDeviceId(device.getId());
         dto.setDeviceToken(device.getDeviceToken());
+        dto.setConfigVersion(device.getConfigVersion());
         dto.setUpdateIntervalSeconds(device.getUpdateIntervalSeconds());
         dto.setRotateIntervalSeconds(device.getRotateIntervalSeconds());
 
+        // Only the messages shown now; the timeline bumps the version when that changes
+        Instant now = Instant.now();
         List<MessageDto> messageDtos = device.getMessages().stream()
+                .filter(m -> timeline.isActive(m.getSchedule(), now))
                 .map(m -> {
                     MessageDto md = new MessageDto();
+                    md.setId(m.getId());
                     md.setText(m.getText());
                     md.setFontSize(m.getFontSize());
                     md.setScroll(m.isScroll());
@@ -184,4 +449,36 @@ public class DeviceService {
 
         return dto;
     }
+
+    /**
+     * Loads the current configuration of the device, merges its group
+     * playlists, encodes it once as JSON and binary and stores the result
+     * in the snapshot cache.
+     *
+     * @param deviceId the ID of the device
+     * @return the snapshot holding the ready-to-write payloads
+     */
+    @Transactional(readOnly = true)
+    public ConfigSnapshot loadConfigSnapshot(Long deviceId) {
+        ConfigLoadedEvent event = new ConfigLoadedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Device device = findById(deviceId);
+        // Reading the messages initializes the lazy collection, so all queries are timed
+        ConfigSnapshot snapshot = compose(device);
+        ConfigDto dto = snapshot.config();
+        metrics.recordSnapshotLoad(start, dto.getMessages().size());
+        snapshotCache.put(snapshot);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.deviceId = deviceId;
+            event.version = snapshot.version();
+            event.messages = dto.getMessages().size();
+            event.jsonBytes = snapshot.json().length;
+            event.binaryBytes = snapshot.binary().length;
+            event.commit();
+        }
+        return snapshot;
+    }
 }
\ No newline at end of file
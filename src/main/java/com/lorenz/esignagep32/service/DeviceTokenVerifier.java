@@ -0,0 +1,168 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.DeviceCreatedEvent;
+import com.lorenz.esignagep32.repository.DeviceRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Authenticates device requests before any configuration is loaded.
+ * <p>
+ * Keeps the SHA-256 hash of every device token seen so far, so checking a
+ * token is one hash computation and one map lookup. A device not yet in
+ * the index costs a single primary key lookup of its token column; IDs
+ * that do not exist are remembered for {@code esp32.token-cache.miss-ttl-seconds},
+ * so probing unknown IDs does not reach the database again. Hashes are
+ * compared in constant time.
+ * <p>
+ * A lookup racing with a token change must not store the token it read
+ * before the change: every invalidation bumps a stamp of the device's
+ * stripe, and a lookup whose stripe stamp moved while it read the database
+ * withdraws what it stored.
+ * <p>
+ * While {@link SignedDeviceTokens} are enabled, tokens in the signed form
+ * are checked by their signature alone and never reach the index.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceTokenVerifier {
+
+    private static final int STRIPES = 1024;
+
+    private final DeviceRepository deviceRepo;
+    private final SignedDeviceTokens signedTokens;
+
+    private final Map<Long, byte[]> tokenHashes = new ConcurrentHashMap<>();
+    private final Map<Long, Long> misses = new ConcurrentHashMap<>();  // Unknown ID -> expiry millis
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);  // Invalidations per stripe
+
+    @Value("${esp32.token-cache.miss-ttl-seconds:60}")
+    private long missTtlSeconds;        // How long unknown IDs are answered from memory
+
+    @Value("${esp32.token-cache.max-misses:10000}")
+    private int maxMisses;              // Unknown IDs remembered at most
+
+    /**
+     * Checks a device token.
+     *
+     * @param deviceId the ID the request claims to come from
+     * @param token    the token sent by the device, may be null
+     * @return true if the token belongs to the device
+     */
+    public boolean verify(Long deviceId, String token) {
+        if (token == null) {
+            return false;
+        }
+        if (signedTokens.isEnabled() && SignedDeviceTokens.isSigned(token)) {
+            return signedTokens.verify(deviceId, token);
+        }
+        byte[] expected = tokenHashes.get(deviceId);
+        if (expected == null) {
+            expected = load(deviceId);
+            if (expected == null) {
+                return false;
+            }
+        }
+        return MessageDigest.isEqual(expected, hashToken(token));
+    }
+
+    /**
+     * Forgets deleted devices and replaced tokens.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted() || event.change() != null
+                && event.change().type() == ConfigChange.Type.TOKEN_REISSUED) {
+            invalidate(event.deviceId());
+        }
+    }
+
+    /**
+     * Forgets that the ID of a new device was unknown.
+     *
+     * @param event the committed creation
+     */
+    @TransactionalEventListener
+    public void onDeviceCreated(DeviceCreatedEvent event) {
+        invalidate(event.deviceId());
+    }
+
+    /**
+     * Drops everything remembered about a device. The stamp is bumped
+     * first, so a lookup that stores its result after the removal notices.
+     */
+    private void invalidate(Long deviceId) {
+        stamps.incrementAndGet(stripe(deviceId));
+        tokenHashes.remove(deviceId);
+        misses.remove(deviceId);
+    }
+
+    /**
+     * Fetches the token of a device missing from the index.
+     *
+     * @return the token hash, or null if the device does not exist
+     */
+    private byte[] load(Long deviceId) {
+        long now = System.currentTimeMillis();
+        Long expiry = misses.get(deviceId);
+        if (expiry != null && expiry > now) {
+            return null;
+        }
+        int stripe = stripe(deviceId);
+        long stamp = stamps.get(stripe);
+        String token = deviceRepo.findDeviceTokenById(deviceId).orElse(null);
+        if (token == null) {
+            if (misses.size() >= maxMisses) {
+                // Keep memory bounded under an enumeration; the rate limit caps the cost of refilling
+                misses.clear();
+            }
+            Long missExpiry = now + missTtlSeconds * 1000;
+            misses.put(deviceId, missExpiry);
+            if (stamps.get(stripe) != stamp) {
+                // The device was created meanwhile
+                misses.remove(deviceId, missExpiry);
+            }
+            return null;
+        }
+        misses.remove(deviceId);
+        byte[] hash = hashToken(token);
+        tokenHashes.put(deviceId, hash);
+        if (stamps.get(stripe) != stamp) {
+            // The token changed meanwhile and may be the one just read
+            tokenHashes.remove(deviceId, hash);
+        }
+        return hash;
+    }
+
+    private static int stripe(Long deviceId) {
+        return Long.hashCode(deviceId) & (STRIPES - 1);
+    }
+
+    /**
+     * Computes the SHA-256 hash of a device token.
+     *
+     * @param token the plain device token
+     * @return the hash bytes
+     */
+    private static byte[] hashToken(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.lorenz.esignagep32.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the firmware binaries flashed through the browser installer.
+ * <p>
+ * On startup each binary is copied out of the application archive into a
+ * temporary file, hashed and memory-mapped, so downloads can be sent by the
+ * container straight from the file or from the mapping without copying
+ * the content onto the heap. The installer manifest is rewritten to point
+ * at content-addressed URLs that never change for a given hash.
+ */
+@Slf4j
+@Component
+public class FirmwareArtifactStore {
+
+    private static final String RESOURCE_DIR = "static/esp-web/";
+    private static final String[] ARTIFACTS = {"bootloader.bin", "partitions.bin", "firmware.bin"};
+
+    /**
+     * A firmware binary ready to be served.
+     *
+     * @param name   the file name, e.g. "firmware.bin"
+     * @param file   the extracted file on disk
+     * @param length the size in bytes
+     * @param sha256 hex SHA-256 of the content
+     * @param data   read-only mapping of the file
+     */
+    public record Artifact(String name, Path file, long length, String sha256, MappedByteBuffer data) {
+
+        /**
+         * Returns the strong ETag derived from the content hash.
+         *
+         * @return the quoted ETag value
+         */
+        public String etag() {
+            return "\"" + sha256 + "\"";
+        }
+
+        /**
+         * Returns the content-addressed path relative to /esp-web/.
+         *
+         * @return the immutable path of this version of the artifact
+         */
+        public String immutablePath() {
+            return "artifacts/" + sha256 + "/" + name;
+        }
+    }
+
+    private final Map<String, Artifact> artifacts = new LinkedHashMap<>();
+    private final byte[] manifest;      // Installer manifest pointing at immutable URLs
+    private final String manifestEtag;
+
+    public FirmwareArtifactStore(ObjectMapper mapper) throws IOException {
+        for (String name : ARTIFACTS) {
+            ClassPathResource resource = new ClassPathResource(RESOURCE_DIR + name);
+            if (!resource.exists()) {
+                // Firmware is only bundled by the Docker build
+                log.warn("Firmware artifact {} not bundled, it will not be served", name);
+                continue;
+            }
+            artifacts.put(name, extract(name, resource));
+        }
+        this.manifest = rewriteManifest(mapper);
+        this.manifestEtag = "\"" + HexFormat.of().formatHex(sha256(manifest), 0, 16) + "\"";
+    }
+
+    /**
+     * Finds an artifact by file name.
+     *
+     * @param name the file name, e.g. "firmware.bin"
+     * @return the artifact, or null if it is not available
+     */
+    public Artifact find(String name) {
+        return artifacts.get(name);
+    }
+
+    /**
+     * Returns the installer manifest with content-addressed artifact paths.
+     *
+     * @return the manifest JSON, must not be modified
+     */
+    public byte[] manifest() {
+        return manifest;
+    }
+
+    /**
+     * Returns the strong ETag of the manifest.
+     *
+     * @return the quoted ETag value
+     */
+    public String manifestEtag() {
+        return manifestEtag;
+    }
+
+    /**
+     * Removes the extracted files on shutdown.
+     */
+    @PreDestroy
+    public void cleanup() {
+        for (Artifact artifact : artifacts.values()) {
+            try {
+                Files.deleteIfExists(artifact.file());
+            } catch (IOException e) {
+                log.debug("Could not delete {}", artifact.file(), e);
+            }
+        }
+    }
+
+    /**
+     * Copies an artifact to a temporary file, hashing it on the way, and maps it.
+     */
+    private static Artifact extract(String name, ClassPathResource resource) throws IOException {
+        Path file = Files.createTempFile("esp-web-", "-" + name);
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+            Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            return new Artifact(name, file, length, HexFormat.of().formatHex(digest.digest()), data);
+        }
+    }
+
+    /**
+     * Replaces the paths of known artifacts in the bundled manifest by
+     * their immutable paths; offsets and other parts are kept as they are.
+     */
+    private byte[] rewriteManifest(ObjectMapper mapper) throws IOException {
+        JsonNode root;
+        try (InputStream in = new ClassPathResource(RESOURCE_DIR + "manifest.json").getInputStream()) {
+            root = mapper.readTree(in);
+        }
+        for (JsonNode build : root.path("builds")) {
+            for (JsonNode part : build.path("parts")) {
+                Artifact artifact = artifacts.get(part.path("path").asText());
+                if (artifact != null) {
+                    ((ObjectNode) part).put("path", artifact.immutablePath());
+                }
+            }
+        }
+        return mapper.writeValueAsBytes(root);
+    }
+
+    private static byte[] sha256(byte[] data) {
+        return newDigest().digest(data);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
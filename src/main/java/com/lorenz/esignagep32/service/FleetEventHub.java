@@ -0,0 +1,308 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.dto.FleetEventDto;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.GroupChangedEvent;
+import com.lorenz.esignagep32.event.PresenceChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fan-out hub for Server-Sent Events describing the devices of each user.
+ * <p>
+ * Subscribers are idle {@link SseEmitter}s without a thread of their own.
+ * Publishing only records the latest state of the device for each
+ * subscriber, and a short-lived virtual thread drains those states while
+ * any are pending. Changes of a device that arrive faster than they are
+ * written coalesce into one event, so a bulk change of a whole page costs
+ * each subscriber one event per device and never overflows anything.
+ * <p>
+ * The initial state is a single event, written before pending changes are
+ * drained, however many devices it covers. A subscription may be limited
+ * to some devices, e.g. those of one page, and then holds at most one
+ * pending state per followed device. A subscription to all devices holds
+ * at most {@code esp32.events.buffer-size} pending states, but no fewer
+ * than a page; beyond that it drops them and resends the whole state as
+ * one event instead.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FleetEventHub {
+
+    private final DeviceService deviceService;
+    private final PresenceEngine presenceEngine;
+
+    @Value("${esp32.events.buffer-size:32}")
+    private int bufferSize;             // Maximum devices with pending changes per unlimited subscriber
+
+    @Value("${app.devices.page-size:50}")
+    private int pageSize;               // Rows per page of the device list
+
+    @Value("${esp32.events.timeout-minutes:30}")
+    private long timeoutMinutes;        // Lifetime of a single event stream
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Opens an event stream for devices owned by the user.
+     * <p>
+     * The stream starts with one {@code devices} event holding the served
+     * configuration version and presence of every device, followed by live
+     * events.
+     *
+     * @param username  the owner's username
+     * @param deviceIds the devices to report, null for all devices of the user
+     * @return the emitter to return from the controller
+     */
+    public SseEmitter subscribe(String username, Collection<Long> deviceIds) {
+        SseEmitter emitter = new SseEmitter(Duration.ofMinutes(timeoutMinutes).toMillis());
+        Subscriber subscriber = new Subscriber(username,
+                deviceIds == null ? null : Set.copyOf(deviceIds), emitter);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        // Registered first, so no change is missed; live changes stay pending meanwhile
+        subscribers.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        try {
+            sendState(subscriber);
+        } catch (IOException | IllegalStateException e) {
+            remove(subscriber);
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscriber.draining().set(false);
+        if (subscriber.hasWork() && subscriber.draining().compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+        return emitter;
+    }
+
+    /**
+     * Announces committed configuration changes to the owner's subscribers.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        publish(event.ownerUsername(), event.deviceId(),
+                new Pending(event.version(), null, event.deleted()));
+    }
+
+    /**
+     * Announces the new served versions of the members of a group whose
+     * playlist changed. Deleted groups need nothing: leaving the group is
+     * announced for every former member.
+     *
+     * @param event the committed playlist change
+     */
+    @TransactionalEventListener
+    public void onGroupChanged(GroupChangedEvent event) {
+        if (event.deleted() || !subscribers.containsKey(event.ownerUsername())) {
+            return;
+        }
+        for (ConfigVersionDto version : deviceService.servedConfigVersionsOfGroup(event.groupId())) {
+            publish(event.ownerUsername(), version.getDeviceId(),
+                    new Pending(version.getVersion(), null, false));
+        }
+    }
+
+    /**
+     * Announces devices coming online or going offline to the owner's subscribers.
+     *
+     * @param event the presence transition
+     */
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        publish(event.ownerUsername(), event.deviceId(),
+                new Pending(null, event.online(), false));
+    }
+
+    /**
+     * Records a change for every subscriber of the user following the device.
+     */
+    private void publish(String username, Long deviceId, Pending change) {
+        Set<Subscriber> targets = subscribers.get(username);
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            if (!subscriber.follows(deviceId)) {
+                continue;
+            }
+            Map<Long, Pending> pending = subscriber.pending();
+            if (subscriber.deviceIds() == null && pending.size() >= Math.max(bufferSize, pageSize)
+                    && !pending.containsKey(deviceId)) {
+                // Too many devices changed for this client to keep up; resend everything instead
+                log.debug("Resynchronizing event subscriber of user {}", username);
+                subscriber.resync().set(true);
+            } else {
+                pending.merge(deviceId, change, Pending::merge);
+            }
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Sends a comment to every subscriber so that proxies keep idle
+     * connections open and dead ones are detected.
+     */
+    @Scheduled(fixedDelayString = "${esp32.events.keep-alive-seconds:25}", timeUnit = TimeUnit.SECONDS)
+    public void keepAlive() {
+        for (Set<Subscriber> targets : subscribers.values()) {
+            for (Subscriber subscriber : targets) {
+                subscriber.keepAlive().set(true);
+                schedule(subscriber);
+            }
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining().compareAndSet(false, true)) {
+            executor.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Writes pending changes until none are left. Only one drain runs per
+     * subscriber at a time, so the events of a device keep their order.
+     */
+    private void drain(Subscriber subscriber) {
+        do {
+            try {
+                if (subscriber.resync().getAndSet(false)) {
+                    // The state is read after clearing, so it covers every dropped change
+                    subscriber.pending().clear();
+                    sendState(subscriber);
+                }
+                for (Long deviceId : subscriber.pending().keySet()) {
+                    Pending change = subscriber.pending().remove(deviceId);
+                    if (change != null) {
+                        send(subscriber, deviceId, change);
+                    }
+                }
+                if (subscriber.keepAlive().getAndSet(false)) {
+                    subscriber.emitter().send(SseEmitter.event().comment("keep-alive"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                remove(subscriber);
+                subscriber.pending().clear();
+                return;
+            }
+            subscriber.draining().set(false);
+            // Re-check: a change may have arrived after the last send
+        } while (subscriber.hasWork() && subscriber.draining().compareAndSet(false, true));
+    }
+
+    /**
+     * Writes one {@code devices} event with the served configuration
+     * version and presence of every followed device.
+     */
+    private void sendState(Subscriber subscriber) throws IOException {
+        List<FleetEventDto> state = deviceService.servedConfigVersions(subscriber.username(),
+                        subscriber.deviceIds()).stream()
+                .map(version -> new FleetEventDto(version.getDeviceId(), version.getVersion(),
+                        presenceEngine.isOnline(version.getDeviceId())))
+                .toList();
+        subscriber.emitter().send(SseEmitter.event().name("devices").data(state));
+    }
+
+    /**
+     * Writes the events describing the coalesced changes of one device.
+     */
+    private void send(Subscriber subscriber, Long deviceId, Pending change) throws IOException {
+        SseEmitter emitter = subscriber.emitter();
+        if (change.deleted()) {
+            emitter.send(SseEmitter.event().name("deleted")
+                    .data(new FleetEventDto(deviceId, change.configVersion(), null)));
+            return;
+        }
+        if (change.configVersion() != null) {
+            emitter.send(SseEmitter.event().name("config")
+                    .data(new FleetEventDto(deviceId, change.configVersion(), null)));
+        }
+        if (change.online() != null) {
+            emitter.send(SseEmitter.event().name("presence")
+                    .data(new FleetEventDto(deviceId, null, change.online())));
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.username(), (u, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The changes of one device not yet written to a subscriber.
+     *
+     * @param configVersion the latest served version, null if unchanged
+     * @param online        the latest presence, null if unchanged
+     * @param deleted       whether the device has been deleted
+     */
+    private record Pending(Long configVersion, Boolean online, boolean deleted) {
+
+        Pending merge(Pending newer) {
+            Long version = configVersion == null ? newer.configVersion
+                    : newer.configVersion == null ? configVersion
+                    : Math.max(configVersion, newer.configVersion);
+            return new Pending(version, newer.online != null ? newer.online : online,
+                    deleted || newer.deleted);
+        }
+    }
+
+    /**
+     * A connected event stream and the latest unsent state of each device
+     * it follows. Draining is held back until the initial state has been
+     * written.
+     */
+    private record Subscriber(String username,
+                              Set<Long> deviceIds,
+                              SseEmitter emitter,
+                              Map<Long, Pending> pending,
+                              AtomicBoolean resync,
+                              AtomicBoolean keepAlive,
+                              AtomicBoolean draining) {
+
+        Subscriber(String username, Set<Long> deviceIds, SseEmitter emitter) {
+            this(username, deviceIds, emitter, new ConcurrentHashMap<>(),
+                    new AtomicBoolean(), new AtomicBoolean(), new AtomicBoolean(true));
+        }
+
+        boolean follows(Long deviceId) {
+            return deviceIds == null || deviceIds.contains(deviceId);
+        }
+
+        boolean hasWork() {
+            return !pending.isEmpty() || resync.get() || keepAlive.get();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.MessageDto;
+import com.lorenz.esignagep32.event.GroupChangedEvent;
+import com.lorenz.esignagep32.model.GroupMessage;
+import com.lorenz.esignagep32.repository.DeviceGroupRepository;
+import com.lorenz.esignagep32.repository.GroupMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of group playlists and their versions.
+ * <p>
+ * A playlist change replaces the single entry of its group with a
+ * placeholder holding the new version. Device snapshots record the group
+ * versions they were built from and compare them against
+ * {@link #version(Long)} when served, so one group edit reaches all
+ * members without touching their entries.
+ */
+@Component
+@RequiredArgsConstructor
+public class GroupPlaylistCache {
+
+    private final DeviceGroupRepository groupRepo;
+    private final GroupMessageRepository messageRepo;
+
+    private final Map<Long, GroupPlaylist> playlists = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the current playlist of a group, loading it on a cache miss.
+     *
+     * @param groupId the ID of the group
+     * @return the playlist, or null if the group does not exist
+     */
+    public GroupPlaylist get(Long groupId) {
+        GroupPlaylist playlist = playlists.get(groupId);
+        if (playlist != null && !playlist.isOutdated()) {
+            hits.increment();
+            return playlist;
+        }
+        misses.increment();
+        return load(groupId);
+    }
+
+    /**
+     * Returns the newest playlist version known for a group, including
+     * versions whose playlist has not been loaded yet.
+     *
+     * @param groupId the ID of the group
+     * @return the newest known version, or -1 if nothing is known
+     */
+    public long version(Long groupId) {
+        GroupPlaylist playlist = playlists.get(groupId);
+        return playlist == null ? -1 : playlist.version();
+    }
+
+    /**
+     * Returns how many lookups found a current playlist.
+     *
+     * @return the number of hits since startup
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lookups had to fall back to the database.
+     *
+     * @return the number of misses since startup
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Outdates the entry of a group once a playlist change has been committed.
+     * Runs before the other listeners, which compare snapshots against the
+     * version recorded here.
+     *
+     * @param event the committed change
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener
+    public void onGroupChanged(GroupChangedEvent event) {
+        if (event.deleted()) {
+            playlists.remove(event.groupId());
+            return;
+        }
+        playlists.compute(event.groupId(), (id, current) ->
+                current != null && current.version() >= event.version()
+                        ? current
+                        : GroupPlaylist.outdated(id, event.version()));
+    }
+
+    /**
+     * Reads a playlist and stores it unless a newer version is already known.
+     */
+    private GroupPlaylist load(Long groupId) {
+        // Version first: messages read afterwards are at least as new, never older
+        Long version = groupRepo.findConfigVersionById(groupId).orElse(null);
+        if (version == null) {
+            return null;
+        }
+        List<MessageDto> messages = messageRepo.findByGroupIdOrderById(groupId).stream()
+                .map(GroupPlaylistCache::toDto)
+                .toList();
+        GroupPlaylist loaded = new GroupPlaylist(groupId, version, messages);
+        playlists.merge(groupId, loaded,
+                (current, candidate) -> candidate.version() >= current.version() ? candidate : current);
+        return loaded;
+    }
+
+    private static MessageDto toDto(GroupMessage message) {
+        MessageDto dto = new MessageDto();
+        dto.setId(message.configId());
+        dto.setText(message.getText());
+        dto.setFontSize(message.getFontSize());
+        dto.setScroll(message.isScroll());
+        return dto;
+    }
+
+    /**
+     * Immutable playlist of a group at one version.
+     *
+     * @param groupId  the ID of the group
+     * @param version  the playlist version
+     * @param messages the messages in playlist order, null for an outdated placeholder
+     */
+    public record GroupPlaylist(Long groupId, long version, List<MessageDto> messages) {
+
+        static GroupPlaylist outdated(Long groupId, long version) {
+            return new GroupPlaylist(groupId, version, null);
+        }
+
+        boolean isOutdated() {
+            return messages == null;
+        }
+    }
+}
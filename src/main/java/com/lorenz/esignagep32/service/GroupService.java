@@ -0,0 +1,246 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.dto.GroupSummaryDto;
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.GroupChangedEvent;
+import com.lorenz.esignagep32.model.DeviceGroup;
+import com.lorenz.esignagep32.model.GroupMessage;
+import com.lorenz.esignagep32.model.User;
+import com.lorenz.esignagep32.repository.DeviceGroupRepository;
+import com.lorenz.esignagep32.repository.DeviceRepository;
+import com.lorenz.esignagep32.repository.GroupMessageRepository;
+import com.lorenz.esignagep32.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Service for managing device groups, their playlists and memberships.
+ * <p>
+ * A playlist edit bumps only the version of its group, whatever the
+ * number of members. Membership changes bump the versions of the devices
+ * concerned with set-based statements; leaving a group advances a device
+ * by the group's version plus one, so the served version, which sums both,
+ * still grows.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional
+public class GroupService {
+
+    // Devices per IN list of the bulk statements
+    private static final int CHUNK_SIZE = 1000;
+
+    private final DeviceGroupRepository groupRepo;
+    private final GroupMessageRepository msgRepo;
+    private final DeviceRepository deviceRepo;
+    private final UserRepository userRepo;
+    private final ApplicationEventPublisher events;
+
+    /**
+     * Retrieves the groups of the specified user with member and message counts.
+     *
+     * @param username the owner's username
+     * @return group summaries ordered by name
+     */
+    @Transactional(readOnly = true)
+    public List<GroupSummaryDto> listGroups(String username) {
+        return groupRepo.findSummaries(username);
+    }
+
+    /**
+     * Finds a group of the user, throwing if not found.
+     *
+     * @param groupId  the ID of the group to retrieve
+     * @param username the username of the user asking
+     * @return the DeviceGroup entity
+     */
+    @Transactional(readOnly = true)
+    public DeviceGroup findById(Long groupId, String username) {
+        return groupRepo.findById(groupId)
+                .filter(group -> group.getOwner().getUsername().equals(username))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Group not found: " + groupId));
+    }
+
+    /**
+     * Creates an empty group for the given user.
+     *
+     * @param username the owner's username
+     * @param name     the name of the new group
+     * @return the created DeviceGroup entity
+     */
+    public DeviceGroup createGroup(String username, String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Group name must not be empty");
+        }
+        User owner = userRepo.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "User not found: " + username));
+        DeviceGroup group = new DeviceGroup();
+        group.setName(name.strip());
+        group.setOwner(owner);
+        return groupRepo.save(group);
+    }
+
+    /**
+     * Deletes a group; its members keep only their own messages.
+     *
+     * @param groupId  the ID of the group to delete
+     * @param username the username of the user asking
+     */
+    public void deleteGroup(Long groupId, String username) {
+        DeviceGroup group = lockGroup(groupId, username);
+        detach(group, groupRepo.findMemberIds(groupId));
+        groupRepo.delete(group);
+        events.publishEvent(new GroupChangedEvent(groupId, username, group.getConfigVersion(), true));
+    }
+
+    /**
+     * Appends a message to the group playlist.
+     *
+     * @param groupId  the ID of the group
+     * @param username the username of the user asking
+     * @param text     message text content
+     * @param fontSize font size multiplier
+     * @param scroll   scroll behavior flag
+     * @return the saved GroupMessage entity
+     */
+    public GroupMessage addMessage(Long groupId,
+                                   String username,
+                                   String text,
+                                   int fontSize,
+                                   boolean scroll) {
+        DeviceGroup group = findById(groupId, username);
+        GroupMessage message = new GroupMessage();
+        message.setGroup(group);
+        message.setText(text);
+        message.setFontSize(fontSize);
+        message.setScroll(scroll);
+        GroupMessage saved = msgRepo.save(message);
+        bumpPlaylistVersion(group);
+        return saved;
+    }
+
+    /**
+     * Removes a message from the group playlist.
+     *
+     * @param groupId   the ID of the group
+     * @param username  the username of the user asking
+     * @param messageId the ID of the message to remove
+     */
+    public void removeMessage(Long groupId, String username, Long messageId) {
+        DeviceGroup group = findById(groupId, username);
+        msgRepo.findById(messageId)
+                .filter(message -> message.getGroup().getId().equals(groupId))
+                .ifPresent(message -> {
+                    msgRepo.delete(message);
+                    bumpPlaylistVersion(group);
+                });
+    }
+
+    /**
+     * Finds a message of the group playlist, throwing if not found.
+     *
+     * @param groupId   the ID of the group owning the message
+     * @param username  the username of the user asking
+     * @param messageId the ID of the message to retrieve
+     * @return the GroupMessage entity
+     */
+    @Transactional(readOnly = true)
+    public GroupMessage findMessage(Long groupId, String username, Long messageId) {
+        findById(groupId, username);
+        return msgRepo.findById(messageId)
+                .filter(message -> message.getGroup().getId().equals(groupId))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Message not found: " + messageId));
+    }
+
+    /**
+     * Adds all devices of the owner whose names contain the search text.
+     *
+     * @param groupId  the ID of the group
+     * @param username the username of the user asking
+     * @param search   text the device names must contain, case-insensitively; null or blank for all
+     * @return the number of devices that joined
+     */
+    public int addMembers(Long groupId, String username, String search) {
+        DeviceGroup group = findById(groupId, username);
+        List<Long> deviceIds = groupRepo.findNonMemberIds(group, username, DeviceService.namePattern(search));
+        Instant now = Instant.now();
+        for (int from = 0; from < deviceIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = deviceIds.subList(from, Math.min(from + CHUNK_SIZE, deviceIds.size()));
+            groupRepo.insertMemberships(groupId, chunk);
+            // Joining adds the group version to the served version; one more marks the change even at 0
+            deviceRepo.advanceConfigVersions(chunk, 1, now);
+            announce(username, chunk);
+        }
+        return deviceIds.size();
+    }
+
+    /**
+     * Removes a device from the group.
+     *
+     * @param groupId  the ID of the group
+     * @param username the username of the user asking
+     * @param deviceId the ID of the member device
+     */
+    public void removeMember(Long groupId, String username, Long deviceId) {
+        detach(lockGroup(groupId, username), List.of(deviceId));
+    }
+
+    /**
+     * Loads a group of the user and locks it, so its version stays fixed
+     * while members are compensated for leaving.
+     */
+    private DeviceGroup lockGroup(Long groupId, String username) {
+        return groupRepo.findByIdForUpdate(groupId)
+                .filter(group -> group.getOwner().getUsername().equals(username))
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Group not found: " + groupId));
+    }
+
+    /**
+     * Removes devices from a locked group and advances each by the group's
+     * version plus one, which raises their served version by exactly one.
+     */
+    private void detach(DeviceGroup group, List<Long> deviceIds) {
+        Instant now = Instant.now();
+        for (int from = 0; from < deviceIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = deviceIds.subList(from, Math.min(from + CHUNK_SIZE, deviceIds.size()));
+            if (groupRepo.deleteMemberships(group.getId(), chunk) == 0) {
+                continue;
+            }
+            deviceRepo.advanceConfigVersions(chunk, group.getConfigVersion() + 1, now);
+            announce(group.getOwner().getUsername(), chunk);
+        }
+    }
+
+    /**
+     * Announces a membership change of each device once the transaction commits.
+     */
+    private void announce(String username, List<Long> deviceIds) {
+        for (ConfigVersionDto version : deviceRepo.findConfigVersions(deviceIds)) {
+            events.publishEvent(new ConfigChangedEvent(version.getDeviceId(), username,
+                    version.getVersion(), version.getDeviceVersion(), false, ConfigChange.groupsChanged()));
+        }
+    }
+
+    /**
+     * Increments the playlist version of the group and announces the change
+     * once the current transaction commits. Member devices are not touched.
+     */
+    private void bumpPlaylistVersion(DeviceGroup group) {
+        // Atomic increment; the row lock serializes concurrent edits until commit
+        groupRepo.incrementConfigVersion(group.getId());
+        long version = groupRepo.findConfigVersionById(group.getId()).orElseThrow();
+        events.publishEvent(new GroupChangedEvent(group.getId(),
+                group.getOwner().getUsername(), version, false));
+    }
+}
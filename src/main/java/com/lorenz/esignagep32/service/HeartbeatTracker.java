@@ -0,0 +1,176 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.jfr.HeartbeatFlushEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind tracker of device polls.
+ * <p>
+ * A poll only updates the device's slot in an in-memory table, without
+ * locks or database access. Slots with new polls are periodically written
+ * to the device_heartbeats table in JDBC batches of standard SQL MERGE
+ * statements, which run unchanged on PostgreSQL 15+ and H2.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HeartbeatTracker {
+
+    private static final int MAX_FIRMWARE_VERSION_LENGTH = 32;
+    private static final int MAX_SOURCE_IP_LENGTH = 64;
+
+    // Joining devices skips rows of devices deleted since their last poll
+    private static final String UPSERT_SQL = """
+            MERGE INTO device_heartbeats h
+            USING (SELECT d.id AS device_id,
+                          CAST(? AS TIMESTAMP WITH TIME ZONE) AS last_seen_at,
+                          CAST(? AS VARCHAR(32)) AS firmware_version,
+                          CAST(? AS VARCHAR(64)) AS source_ip,
+                          CAST(? AS BIGINT) AS polls
+                   FROM devices d
+                   WHERE d.id = ?) s
+            ON h.device_id = s.device_id
+            WHEN MATCHED THEN UPDATE SET
+                last_seen_at = s.last_seen_at,
+                firmware_version = s.firmware_version,
+                source_ip = s.source_ip,
+                poll_count = h.poll_count + s.polls
+            WHEN NOT MATCHED THEN INSERT (device_id, last_seen_at, firmware_version, source_ip, poll_count)
+                VALUES (s.device_id, s.last_seen_at, s.firmware_version, s.source_ip, s.polls)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final Map<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    @Value("${esp32.heartbeat.batch-size:1000}")
+    private int batchSize;              // Statements per JDBC batch
+
+    /**
+     * Records a poll of a device.
+     *
+     * @param deviceId        the ID of the polling device
+     * @param firmwareVersion the firmware version reported by the device, may be null
+     * @param sourceIp        the address the poll came from
+     */
+    public void record(Long deviceId, String firmwareVersion, String sourceIp) {
+        Slot slot = slots.get(deviceId);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(deviceId, id -> new Slot());
+        }
+        slot.lastSeenMillis = System.currentTimeMillis();
+        // Avoid needless writes to shared memory, these rarely change
+        String version = truncate(firmwareVersion, MAX_FIRMWARE_VERSION_LENGTH);
+        if (!Objects.equals(slot.firmwareVersion, version)) {
+            slot.firmwareVersion = version;
+        }
+        String ip = truncate(sourceIp, MAX_SOURCE_IP_LENGTH);
+        if (!Objects.equals(slot.sourceIp, ip)) {
+            slot.sourceIp = ip;
+        }
+        slot.pendingPolls.incrementAndGet();
+    }
+
+    /**
+     * Writes all slots polled since the previous flush to the database.
+     * If the write fails, their polls are kept for the next attempt.
+     */
+    @Scheduled(fixedDelayString = "${esp32.heartbeat.flush-interval-ms:5000}")
+    public void flush() {
+        HeartbeatFlushEvent event = new HeartbeatFlushEvent();
+        event.begin();
+        List<Object[]> rows = new ArrayList<>();
+        List<Slot> flushed = new ArrayList<>();
+        for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            long polls = slot.pendingPolls.getAndSet(0);
+            if (polls == 0) {
+                continue;
+            }
+            rows.add(new Object[]{
+                    OffsetDateTime.ofInstant(Instant.ofEpochMilli(slot.lastSeenMillis), ZoneOffset.UTC),
+                    slot.firmwareVersion,
+                    slot.sourceIp,
+                    polls,
+                    entry.getKey()
+            });
+            flushed.add(slot);
+        }
+
+        int batches = 0;
+        int failed = 0;
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, rows.size());
+            batches++;
+            try {
+                jdbc.batchUpdate(UPSERT_SQL, rows.subList(from, to));
+            } catch (DataAccessException e) {
+                log.warn("Heartbeat flush of {} devices failed, retrying later", to - from, e);
+                failed += to - from;
+                for (int i = from; i < to; i++) {
+                    flushed.get(i).pendingPolls.addAndGet((Long) rows.get(i)[3]);
+                }
+            }
+        }
+
+        // Idle flushes are not worth an event
+        if (!rows.isEmpty()) {
+            event.devices = rows.size();
+            event.batches = batches;
+            event.failedDevices = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes outstanding polls before the application shuts down.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Forgets deleted devices; their rows are removed by the database.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            slots.remove(event.deviceId());
+        }
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+
+    /**
+     * Latest poll state of one device.
+     */
+    private static final class Slot {
+        volatile long lastSeenMillis;
+        volatile String firmwareVersion;
+        volatile String sourceIp;
+        final AtomicLong pendingPolls = new AtomicLong();   // Polls not yet written
+    }
+}
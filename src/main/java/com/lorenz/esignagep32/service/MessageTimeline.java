@@ -0,0 +1,251 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.ConfigVersionDto;
+import com.lorenz.esignagep32.dto.ScheduledMessageDto;
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.MessageScheduleChangedEvent;
+import com.lorenz.esignagep32.model.MessageSchedule;
+import com.lorenz.esignagep32.repository.DeviceRepository;
+import com.lorenz.esignagep32.repository.DisplayMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory timeline of the instants at which scheduled messages appear
+ * or disappear.
+ * <p>
+ * Snapshots only contain the messages shown when they are built, so the
+ * serving path never evaluates schedules. Instead, each scheduled message
+ * is filed under its next change; a tick pops the changes that are due
+ * and bumps the versions of just the devices concerned, one version per
+ * message, announced as the message being added or removed. Cached
+ * snapshots are thereby outdated and deltas work unchanged.
+ * <p>
+ * Changes passed while the server was down are found on startup by
+ * comparing each schedule with the last version change of its device.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageTimeline {
+
+    // Devices per IN list of the bulk statements
+    private static final int CHUNK_SIZE = 1000;
+
+    private final DisplayMessageRepository msgRepo;
+    private final DeviceRepository deviceRepo;
+    private final TransactionTemplate transactions;
+    private final ApplicationEventPublisher events;
+
+    @Value("${esp32.schedule.zone:UTC}")
+    private ZoneId zone;                // Zone of schedule days and times
+
+    // Guarded by this; boundaries may hold IDs of messages removed since, which are skipped
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableMap<Instant, Set<Long>> boundaries = new TreeMap<>();
+
+    /**
+     * Returns the zone schedule days and times are interpreted in.
+     *
+     * @return the schedule zone
+     */
+    public ZoneId zone() {
+        return zone;
+    }
+
+    /**
+     * Tells whether a message with the given schedule is shown at an instant.
+     *
+     * @param schedule the schedule of the message, null if always shown
+     * @param instant  the instant to check
+     * @return true if the message is shown
+     */
+    public boolean isActive(MessageSchedule schedule, Instant instant) {
+        return schedule == null || schedule.isActive(instant, zone);
+    }
+
+    /**
+     * Returns the number of scheduled messages that will still change.
+     *
+     * @return the number of messages on the timeline
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Puts a committed scheduled message on the timeline, or takes a
+     * removed one off it.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onMessageScheduleChanged(MessageScheduleChangedEvent event) {
+        synchronized (this) {
+            if (event.schedule() == null) {
+                entries.remove(event.messageId());
+            } else {
+                file(new Entry(event.messageId(), event.deviceId(), event.ownerUsername(), event.schedule()),
+                        Instant.now());
+            }
+        }
+    }
+
+    /**
+     * Forgets the messages of deleted devices.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            synchronized (this) {
+                entries.values().removeIf(entry -> entry.deviceId().equals(event.deviceId()));
+            }
+        }
+    }
+
+    /**
+     * Loads all scheduled messages and announces the changes missed while
+     * the server was not running.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Instant now = Instant.now();
+        List<Entry> missed = new ArrayList<>();
+        List<ScheduledMessageDto> scheduled = msgRepo.findScheduled();
+        synchronized (this) {
+            for (ScheduledMessageDto message : scheduled) {
+                Entry entry = new Entry(message.getMessageId(), message.getDeviceId(),
+                        message.getOwnerUsername(), message.getSchedule());
+                Instant changedAt = message.getConfigChangedAt();
+                Instant change = changedAt == null ? null : entry.schedule().nextChange(changedAt, zone);
+                if (change != null && !change.isAfter(now)) {
+                    missed.add(entry);
+                }
+                file(entry, now);
+            }
+        }
+        log.info("Loaded {} scheduled messages, {} changed while stopped", scheduled.size(), missed.size());
+        announce(missed, now);
+    }
+
+    /**
+     * Announces the changes that are due.
+     */
+    @Scheduled(fixedDelayString = "${esp32.schedule.tick-ms:1000}")
+    public void tick() {
+        Instant now = Instant.now();
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            while (!boundaries.isEmpty() && !boundaries.firstKey().isAfter(now)) {
+                for (Long messageId : boundaries.pollFirstEntry().getValue()) {
+                    Entry entry = entries.remove(messageId);
+                    if (entry != null) {
+                        due.add(entry);
+                        file(entry, now);
+                    }
+                }
+            }
+        }
+        announce(due, now);
+    }
+
+    /**
+     * Files an entry under its next change after the given instant, or
+     * drops it if the message never changes again. Caller holds the lock.
+     */
+    private void file(Entry entry, Instant after) {
+        Instant change = entry.schedule().nextChange(after, zone);
+        if (change == null) {
+            entries.remove(entry.messageId());
+            return;
+        }
+        entries.put(entry.messageId(), entry);
+        boundaries.computeIfAbsent(change, at -> new HashSet<>()).add(entry.messageId());
+    }
+
+    /**
+     * Bumps the devices of the changed messages, one version per message,
+     * and announces each message as added or removed. On failure the
+     * messages are filed for the next tick again.
+     */
+    private void announce(List<Entry> changed, Instant now) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Entry>> byDevice = new LinkedHashMap<>();
+        for (Entry entry : changed) {
+            byDevice.computeIfAbsent(entry.deviceId(), id -> new ArrayList<>()).add(entry);
+        }
+        List<Long> deviceIds = new ArrayList<>(byDevice.keySet());
+        try {
+            for (int from = 0; from < deviceIds.size(); from += CHUNK_SIZE) {
+                List<Long> chunk = deviceIds.subList(from, Math.min(from + CHUNK_SIZE, deviceIds.size()));
+                transactions.executeWithoutResult(tx -> bump(chunk, byDevice, now));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cannot announce schedule changes of {} devices, retrying", deviceIds.size(), e);
+            synchronized (this) {
+                for (Entry entry : changed) {
+                    if (entries.containsKey(entry.messageId())) {
+                        boundaries.computeIfAbsent(now, at -> new HashSet<>()).add(entry.messageId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances one chunk of devices within the current transaction.
+     */
+    private void bump(List<Long> deviceIds, Map<Long, List<Entry>> byDevice, Instant now) {
+        // Usually one message per device changes; a single statement per distinct count
+        Map<Integer, List<Long>> byCount = new HashMap<>();
+        for (Long deviceId : deviceIds) {
+            byCount.computeIfAbsent(byDevice.get(deviceId).size(), n -> new ArrayList<>()).add(deviceId);
+        }
+        byCount.forEach((count, ids) -> deviceRepo.advanceConfigVersions(ids, count, now));
+
+        // Devices deleted meanwhile are not found and stay unannounced
+        for (ConfigVersionDto version : deviceRepo.findConfigVersions(deviceIds)) {
+            List<Entry> messages = byDevice.get(version.getDeviceId());
+            for (int i = 0; i < messages.size(); i++) {
+                Entry entry = messages.get(i);
+                long back = messages.size() - 1 - i;
+                ConfigChange change = entry.schedule().isActive(now, zone)
+                        ? ConfigChange.messageAdded(entry.messageId())
+                        : ConfigChange.messageRemoved(entry.messageId());
+                events.publishEvent(new ConfigChangedEvent(entry.deviceId(), entry.ownerUsername(),
+                        version.getVersion() - back, version.getDeviceVersion() - back, false, change));
+            }
+        }
+    }
+
+    /**
+     * A scheduled message and where to announce its changes.
+     */
+    private record Entry(Long messageId, Long deviceId, String ownerUsername, MessageSchedule schedule) {
+    }
+}
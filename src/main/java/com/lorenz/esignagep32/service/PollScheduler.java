@@ -0,0 +1,308 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.dto.PollScheduleStatsDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tells polling devices when to poll next, so that polls spread evenly
+ * over time instead of arriving in bursts.
+ * <p>
+ * Devices that boot together, e.g. after a power cut, would otherwise poll
+ * in lockstep forever. Every poll is handed the delay until its next poll:
+ * the least booked second within a window around the device's update
+ * interval is picked, as long as it has not used up the per-second budget.
+ * If the whole window is booked, or the server currently receives more
+ * polls per second than the budget, the device is pushed further out, up
+ * to {@code esp32.poll.max-backoff} times its interval. Should even that
+ * range be booked up, the device is overbooked onto a second of the range
+ * chosen by its phase, so overflow stays spread as well.
+ * <p>
+ * The budget follows the fleet: the rate the fleet would poll at with its
+ * configured intervals is estimated from recent polls, each weighted by
+ * its planned delay over its interval so that backed-off devices still
+ * count at their configured rate. The budget is that rate times
+ * {@code esp32.poll.headroom}, but at least {@code esp32.poll.slot-budget}.
+ * Backoff therefore only slows devices down while polls arrive faster
+ * than the fleet's own rate, e.g. right after a mass reboot.
+ * <p>
+ * Polls are planned at most {@code PLAN_SECONDS}, about 4.5 hours, ahead.
+ * Devices with longer intervals are not booked and get their configured
+ * interval, shifted within the window by their phase.
+ * <p>
+ * Only scheduled polls are counted and booked. Devices holding a watch
+ * or fetching a delta get a suggested delay picked from the same plan
+ * without booking it.
+ * <p>
+ * Planned and actual polls per second are counted in rings of packed
+ * counters updated by CAS; each counter carries its epoch second, so
+ * stale counters reset themselves when the ring wraps around.
+ */
+@Component
+public class PollScheduler {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int PLAN_SECONDS = 1 << 14;    // Furthest planned poll, about 4.5 hours
+    private static final int HISTORY_SECONDS = 1 << 6;  // Window of actual polls kept
+    private static final int DEMAND_UNITS = 16;         // Fixed-point scale of poll weights
+
+    private final AtomicLongArray planned = new AtomicLongArray(PLAN_SECONDS);
+    private final AtomicLongArray arrivals = new AtomicLongArray(HISTORY_SECONDS);
+    private final AtomicLongArray demand = new AtomicLongArray(HISTORY_SECONDS);
+
+    // Budget of the current second, recomputed once per second
+    private volatile Budget currentBudget = new Budget(Long.MIN_VALUE, 0);
+
+    @Value("${esp32.poll.slot-budget:100}")
+    private int slotBudget;             // Smallest per-second budget, for small fleets
+
+    @Value("${esp32.poll.headroom:1.25}")
+    private double headroom;            // Budget as a multiple of the fleet's poll rate
+
+    @Value("${esp32.poll.spread:0.5}")
+    private double spread;              // Window width as a fraction of the interval
+
+    @Value("${esp32.poll.max-backoff:4}")
+    private int maxBackoff;             // Longest delay as a multiple of the interval
+
+    @Value("${esp32.poll.stats-seconds:60}")
+    private int statsSeconds;           // Completed seconds covered by the statistics
+
+    /**
+     * Records a poll and plans the next one of the same device.
+     *
+     * @param deviceId              the ID of the polling device
+     * @param updateIntervalSeconds the device's configured poll interval
+     * @return the delay in milliseconds after which the device should poll again
+     */
+    public long nextPollAfterMillis(Long deviceId, int updateIntervalSeconds) {
+        return plan(deviceId, updateIntervalSeconds, true);
+    }
+
+    /**
+     * Suggests when a device that is not polling on its schedule, e.g. one
+     * holding a watch, should poll next. Picks a second the same way as
+     * {@link #nextPollAfterMillis} but neither counts the request nor books
+     * the second, so off-schedule requests do not inflate the budgets.
+     *
+     * @param deviceId              the ID of the device
+     * @param updateIntervalSeconds the device's configured poll interval
+     * @return the delay in milliseconds after which the device should poll
+     */
+    public long suggestNextPollAfterMillis(Long deviceId, int updateIntervalSeconds) {
+        return plan(deviceId, updateIntervalSeconds, false);
+    }
+
+    /**
+     * Picks the second of the next poll, booking it and counting the
+     * current poll only if asked to.
+     */
+    private long plan(Long deviceId, int updateIntervalSeconds, boolean book) {
+        long nowMillis = System.currentTimeMillis();
+        long nowSecond = nowMillis / 1000;
+        if (book) {
+            book(arrivals, nowSecond, Integer.MAX_VALUE);
+        }
+
+        long interval = Math.max(1, updateIntervalSeconds);
+        long mix = mix(deviceId);
+        long width = Math.max(1, Math.round(interval * spread));
+        long first = Math.max(1, interval - width / 2);
+        long phase = Math.floorMod(mix, width);
+        int budget = budget(nowSecond);
+
+        // Back off while the server is already receiving more than planned
+        long recent = count(arrivals, nowSecond - 1);
+        if (recent > budget) {
+            long factor = Math.min(maxBackoff, Math.ceilDiv(recent, budget));
+            first = Math.max(1, interval * factor - width / 2);
+        }
+        if (first + width > PLAN_SECONDS - 1) {
+            // Beyond the planning horizon: keep the interval, spread by phase only
+            if (book) {
+                record(nowSecond, first + phase, interval);
+            }
+            return (first + phase) * 1000 + Math.floorMod(mix >>> 32, 1000);
+        }
+        long last = Math.min(Math.max(first + width, interval * maxBackoff), PLAN_SECONDS - 1);
+
+        long second = -1;
+        while (second < 0) {
+            // Least booked second of the window, ties going to the device's phase
+            long best = -1;
+            long bestCount = budget;
+            for (long i = 0; i < width && bestCount > 0; i++) {
+                long candidate = nowSecond + first + (phase + i) % width;
+                long n = count(planned, candidate);
+                if (n < bestCount && candidate <= nowSecond + last) {
+                    best = candidate;
+                    bestCount = n;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            if (!book || book(planned, best, budget)) {
+                second = best;
+            }
+        }
+        // The window is booked up: take the next second with room beyond it
+        for (long offset = first + width; second < 0 && offset <= last; offset++) {
+            if (book ? book(planned, nowSecond + offset, budget) : count(planned, nowSecond + offset) < budget) {
+                second = nowSecond + offset;
+            }
+        }
+        if (second < 0) {
+            // Everything is booked: overbook a second of the range picked by phase, not a single one
+            second = nowSecond + first + Math.floorMod(mix, last - first + 1);
+            if (book) {
+                book(planned, second, Integer.MAX_VALUE);
+            }
+        }
+        if (book) {
+            record(nowSecond, second - nowSecond, interval);
+        }
+
+        // Spread polls within their second as well
+        long millis = second * 1000 + Math.floorMod(mix >>> 32, 1000);
+        return Math.max(1000, millis - nowMillis);
+    }
+
+    /**
+     * Summarizes how evenly polls arrived over the last completed seconds.
+     *
+     * @return statistics of actual and planned polls per second
+     */
+    public PollScheduleStatsDto stats() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        int seconds = Math.clamp(statsSeconds, 1, HISTORY_SECONDS - 1);
+
+        long sum = 0;
+        long max = 0;
+        double sumSquares = 0;
+        for (long s = nowSecond - seconds; s < nowSecond; s++) {
+            long n = count(arrivals, s);
+            sum += n;
+            max = Math.max(max, n);
+            sumSquares += (double) n * n;
+        }
+        double mean = (double) sum / seconds;
+        double stdDev = Math.sqrt(Math.max(0, sumSquares / seconds - mean * mean));
+
+        long plannedSum = 0;
+        long plannedMax = 0;
+        for (long s = nowSecond + 1; s <= nowSecond + seconds; s++) {
+            long n = count(planned, s);
+            plannedSum += n;
+            plannedMax = Math.max(plannedMax, n);
+        }
+
+        PollScheduleStatsDto stats = new PollScheduleStatsDto();
+        stats.setWindowSeconds(seconds);
+        stats.setSlotBudget(budget(nowSecond));
+        stats.setFleetRatePerSecond(fleetRate(nowSecond));
+        stats.setPolls(sum);
+        stats.setMeanPerSecond(mean);
+        stats.setMaxPerSecond(max);
+        stats.setStdDevPerSecond(stdDev);
+        // 0 for a perfectly flat rate; a herd in lockstep approaches sqrt(window)
+        stats.setCoefficientOfVariation(mean > 0 ? stdDev / mean : 0);
+        stats.setPeakToMean(mean > 0 ? max / mean : 0);
+        stats.setPlannedNextWindow(plannedSum);
+        stats.setPlannedMaxPerSecond(plannedMax);
+        return stats;
+    }
+
+    /**
+     * Returns the number of polls that may be planned into one second.
+     */
+    private int budget(long nowSecond) {
+        Budget current = currentBudget;
+        if (current.second() != nowSecond) {
+            long limit = (long) Math.ceil(fleetRate(nowSecond) * headroom);
+            current = new Budget(nowSecond, (int) Math.max(slotBudget, Math.min(COUNT_MASK, limit)));
+            currentBudget = current;
+        }
+        return current.limit();
+    }
+
+    /**
+     * Estimates the polls per second the fleet makes at its configured
+     * intervals, from the weighted polls of the last completed seconds.
+     */
+    private double fleetRate(long nowSecond) {
+        long sum = 0;
+        for (long s = nowSecond - (HISTORY_SECONDS - 1); s < nowSecond; s++) {
+            sum += count(demand, s);
+        }
+        return (double) sum / DEMAND_UNITS / (HISTORY_SECONDS - 1);
+    }
+
+    /**
+     * Weights a poll by its planned delay over its configured interval. A
+     * device polling every {@code delay} seconds thereby adds
+     * {@code 1 / interval} to the estimated rate, however far it is pushed out.
+     */
+    private void record(long nowSecond, long delaySeconds, long interval) {
+        add(demand, nowSecond, Math.max(1, Math.round((double) delaySeconds * DEMAND_UNITS / interval)));
+    }
+
+    /**
+     * Adds an amount to the counter of a second, saturating at the counter width.
+     */
+    private static void add(AtomicLongArray ring, long second, long amount) {
+        int index = (int) (second & (ring.length() - 1));
+        while (true) {
+            long current = ring.get(index);
+            long count = (current >>> COUNT_BITS) == second ? current & COUNT_MASK : 0;
+            long updated = Math.min(COUNT_MASK, count + amount);
+            if (ring.compareAndSet(index, current, (second << COUNT_BITS) | updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds one to the counter of a second unless it reached the limit.
+     */
+    private static boolean book(AtomicLongArray ring, long second, int limit) {
+        int index = (int) (second & (ring.length() - 1));
+        while (true) {
+            long current = ring.get(index);
+            long count = (current >>> COUNT_BITS) == second ? current & COUNT_MASK : 0;
+            if (count >= Math.min(limit, COUNT_MASK)) {
+                return false;
+            }
+            if (ring.compareAndSet(index, current, (second << COUNT_BITS) | (count + 1))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads the counter of a second, zero if its slot holds another second.
+     */
+    private static long count(AtomicLongArray ring, long second) {
+        long current = ring.get((int) (second & (ring.length() - 1)));
+        return (current >>> COUNT_BITS) == second ? current & COUNT_MASK : 0;
+    }
+
+    /**
+     * Scrambles a device ID into a stable, evenly distributed phase.
+     */
+    private static long mix(Long deviceId) {
+        long z = deviceId * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The per-second budget and the second it was computed for.
+     */
+    private record Budget(long second, int limit) {
+    }
+}
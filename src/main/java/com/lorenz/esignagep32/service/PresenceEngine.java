@@ -0,0 +1,286 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.event.PresenceChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks which devices are online from their polls.
+ * <p>
+ * A device is online while it polls and goes offline once it misses
+ * {@code esp32.presence.missed-polls} polls in a row, judged by the delay
+ * the poll scheduler handed it with its last response. Deadlines are kept
+ * in a hierarchical timing wheel, so the cost per device is constant no
+ * matter how many devices or how long their intervals are.
+ * <p>
+ * Polls never touch the wheel: they only move the device's deadline
+ * forward. When the wheel reaches the old expiry, it finds the deadline
+ * moved and reschedules the device lazily, so a device costs one wheel
+ * operation per timeout period instead of one per poll.
+ * <p>
+ * Transitions are published as {@link PresenceChangedEvent}s.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceEngine {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;    // Slots per level
+    private static final int LEVELS = 4;                // 64^4 ticks, about 194 days at 1 s
+
+    private static final String ACTIVE_DEVICES_SQL = """
+            SELECT h.device_id, h.last_seen_at, d.update_interval_seconds, u.username
+            FROM device_heartbeats h
+            JOIN devices d ON d.id = h.device_id
+            JOIN users u ON u.id = d.user_id
+            """;
+
+    private final ApplicationEventPublisher events;
+    private final JdbcTemplate jdbc;
+
+    @Value("${esp32.presence.missed-polls:3}")
+    private int missedPolls;            // Polls missed in a row until offline
+
+    @Value("${esp32.presence.tick-ms:1000}")
+    private long tickMillis;            // Resolution of the wheel
+
+    private final Map<Long, Presence> devices = new ConcurrentHashMap<>();
+    private final Queue<Presence> incoming = new ConcurrentLinkedQueue<>();
+
+    // Wheel state below is only accessed by the scheduler thread
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Presence>[][] wheel = new ArrayDeque[LEVELS][SLOTS];
+    private long currentTick = -1;
+
+    /**
+     * Records a poll of a device, bringing it online if it was offline.
+     *
+     * @param deviceId        the ID of the polling device
+     * @param ownerUsername   the username of the device owner
+     * @param pollDelayMillis the delay until the device's next poll
+     */
+    public void touch(Long deviceId, String ownerUsername, long pollDelayMillis) {
+        Presence presence = devices.get(deviceId);
+        if (presence == null) {
+            presence = devices.computeIfAbsent(deviceId, id -> new Presence(id, ownerUsername));
+        }
+        // Write the deadline before reading the state; the wheel does the reverse
+        presence.deadline = System.currentTimeMillis() + timeoutMillis(pollDelayMillis);
+        if (presence.online) {
+            return;
+        }
+        boolean cameOnline;
+        synchronized (presence) {
+            cameOnline = !presence.online && !presence.removed;
+            if (cameOnline) {
+                presence.online = true;
+                if (!presence.scheduled) {
+                    presence.scheduled = true;
+                    incoming.add(presence);
+                }
+            }
+        }
+        if (cameOnline) {
+            events.publishEvent(new PresenceChangedEvent(deviceId, ownerUsername, true));
+        }
+    }
+
+    /**
+     * Indicates whether a device is currently online.
+     *
+     * @param deviceId the ID of the device
+     * @return true if the device polled within its timeout
+     */
+    public boolean isOnline(Long deviceId) {
+        Presence presence = devices.get(deviceId);
+        return presence != null && presence.online;
+    }
+
+    /**
+     * Advances the wheel to the current time, expiring devices whose
+     * deadline has passed.
+     */
+    @Scheduled(fixedRateString = "${esp32.presence.tick-ms:1000}")
+    public void advance() {
+        long now = System.currentTimeMillis();
+        long nowTick = now / tickMillis;
+        if (currentTick < 0) {
+            currentTick = nowTick;
+        }
+        Presence added;
+        while ((added = incoming.poll()) != null) {
+            schedule(added);
+        }
+
+        List<Presence> offline = new ArrayList<>();
+        while (currentTick < nowTick) {
+            currentTick++;
+            // Move entries of higher levels down when a lower level wraps
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS - 1)));
+                }
+            }
+            ArrayDeque<Presence> due = wheel[0][(int) (currentTick & (SLOTS - 1))];
+            if (due != null) {
+                Presence presence;
+                while ((presence = due.poll()) != null) {
+                    if (expire(presence, now)) {
+                        offline.add(presence);
+                    }
+                }
+            }
+        }
+        for (Presence presence : offline) {
+            events.publishEvent(new PresenceChangedEvent(presence.deviceId, presence.ownerUsername, false));
+        }
+    }
+
+    /**
+     * Restores devices that polled shortly before a restart, so they do not
+     * appear offline until their next poll.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        long now = System.currentTimeMillis();
+        jdbc.query(ACTIVE_DEVICES_SQL, rs -> {
+            Timestamp lastSeen = rs.getTimestamp("last_seen_at");
+            long deadline = lastSeen.getTime() + timeoutMillis(rs.getInt("update_interval_seconds") * 1000L);
+            if (deadline <= now) {
+                return;
+            }
+            Presence presence = new Presence(rs.getLong("device_id"), rs.getString("username"));
+            presence.deadline = deadline;
+            presence.online = true;
+            presence.scheduled = true;
+            if (devices.putIfAbsent(presence.deviceId, presence) == null) {
+                incoming.add(presence);
+            }
+        });
+        log.info("Restored presence of {} devices", devices.size());
+    }
+
+    /**
+     * Forgets deleted devices; the wheel drops them when they come due.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        if (event.deleted()) {
+            Presence presence = devices.remove(event.deviceId());
+            if (presence != null) {
+                synchronized (presence) {
+                    presence.removed = true;
+                    presence.online = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles a device whose slot came due.
+     *
+     * @return true if the device went offline
+     */
+    private boolean expire(Presence presence, long now) {
+        synchronized (presence) {
+            if (presence.removed) {
+                presence.scheduled = false;
+                return false;
+            }
+            if (presence.deadline > now) {
+                // Polled since it was scheduled: lazily move it to its new deadline
+                schedule(presence);
+                return false;
+            }
+            presence.online = false;
+            if (presence.deadline > now) {
+                // A poll raced with the expiry and saw the old state
+                presence.online = true;
+                schedule(presence);
+                return false;
+            }
+            presence.scheduled = false;
+            return true;
+        }
+    }
+
+    /**
+     * Re-inserts the entries of a higher-level slot according to their deadline.
+     */
+    private void cascade(int level, int slot) {
+        ArrayDeque<Presence> entries = wheel[level][slot];
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        wheel[level][slot] = null;
+        for (Presence presence : entries) {
+            schedule(presence);
+        }
+    }
+
+    /**
+     * Places an entry into the slot of the smallest level covering its deadline.
+     */
+    private void schedule(Presence presence) {
+        // The current slot has been processed already, so the next tick is the earliest
+        long dueTick = Math.max(Math.ceilDiv(presence.deadline, tickMillis), currentTick + 1);
+        long delta = dueTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        if (delta >= 1L << (SLOT_BITS * LEVELS)) {
+            // Beyond the wheel: park in the farthest slot and re-check from there
+            dueTick = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+        }
+        int slot = (int) ((dueTick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+        ArrayDeque<Presence> entries = wheel[level][slot];
+        if (entries == null) {
+            entries = new ArrayDeque<>();
+            wheel[level][slot] = entries;
+        }
+        entries.add(presence);
+    }
+
+    private long timeoutMillis(long pollDelayMillis) {
+        return Math.max(1000, pollDelayMillis) * missedPolls;
+    }
+
+    /**
+     * Presence state of one device.
+     */
+    private static final class Presence {
+        final Long deviceId;
+        final String ownerUsername;
+        volatile long deadline;         // Epoch millis after which the device is offline
+        volatile boolean online;
+        boolean scheduled;              // In the wheel or queued for it; guarded by this
+        boolean removed;                // Device deleted; guarded by this
+
+        Presence(Long deviceId, String ownerUsername) {
+            this.deviceId = deviceId;
+            this.ownerUsername = ownerUsername;
+        }
+    }
+}
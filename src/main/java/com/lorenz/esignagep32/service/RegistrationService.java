@@ -1,6 +1,8 @@
 package com.lorenz.esignagep32.service;
 
 import com.lorenz.esignagep32.dto.SetupDto;
+import com.lorenz.esignagep32.jfr.SetupGeneratedEvent;
+import com.lorenz.esignagep32.model.Device;
 import com.lorenz.esignagep32.model.GlobalSettings;
 import com.lorenz.esignagep32.model.RegistrationToken;
 import com.lorenz.esignagep32.model.User;
@@ -29,6 +31,7 @@ public class RegistrationService {
     private final UserRepository userRepo;
     private final GlobalSettingsService settingsService;
     private final DeviceService deviceService;
+    private final DeviceApiMetrics metrics;
 
     /**
      * Generates the initial setup configuration for a new device.
@@ -45,6 +48,10 @@ public class RegistrationService {
      *         device ID, and device token
      */
     public SetupDto generateSetupConfig(String username) {
+        long start = System.nanoTime();
+        SetupGeneratedEvent event = new SetupGeneratedEvent();
+        event.begin();
+
         // 1) Retrieve user or throw if not found
         User user = userRepo.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException(
@@ -57,7 +64,43 @@ public class RegistrationService {
         var device = deviceService.createDevice(username,
                 "ESP32-" + UUID.randomUUID());
 
-        // 4) Generate and save a new registration token
+        // 4) and 5) Registration token and setup configuration DTO
+        SetupDto dto = setupFor(user, gs, device);
+        metrics.recordSetup(start);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.deviceId = device.getId();
+            event.commit();
+        }
+        return dto;
+    }
+
+    /**
+     * Replaces the token of an existing device and generates the setup
+     * configuration to provision it with again.
+     *
+     * @param username the name of the user owning the device
+     * @param deviceId the ID of the device whose token to replace
+     * @return SetupDto carrying the new device token
+     * @throws IllegalArgumentException if the device does not belong to the user
+     */
+    public SetupDto reissueSetupConfig(String username, Long deviceId) {
+        User user = userRepo.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "User not found: " + username));
+        if (!deviceService.findById(deviceId).getOwner().getId().equals(user.getId())) {
+            throw new IllegalArgumentException("Device not found: " + deviceId);
+        }
+        Device device = deviceService.reissueToken(deviceId);
+        return setupFor(user, settingsService.getSettings(), device);
+    }
+
+    /**
+     * Saves a new registration token and populates the setup configuration
+     * of a device.
+     */
+    private SetupDto setupFor(User user, GlobalSettings gs, Device device) {
         String registrationToken = UUID.randomUUID().toString();
         RegistrationToken reg = new RegistrationToken();
         reg.setToken(registrationToken);
@@ -65,7 +108,6 @@ public class RegistrationService {
         reg.setCreatedAt(Instant.now());
         tokenRepo.save(reg);
 
-        // 5) Build and return the setup configuration DTO
         SetupDto dto = new SetupDto();
         dto.setWifiSsid(gs.getWifiSsid());
         dto.setWifiPassword(gs.getWifiPassword());
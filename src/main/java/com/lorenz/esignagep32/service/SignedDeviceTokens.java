@@ -0,0 +1,320 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.event.ConfigChange;
+import com.lorenz.esignagep32.event.ConfigChangedEvent;
+import com.lorenz.esignagep32.model.Device;
+import com.lorenz.esignagep32.model.RevokedDeviceToken;
+import com.lorenz.esignagep32.repository.RevokedDeviceTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and verifies device tokens that any server node can check
+ * without a database lookup.
+ * <p>
+ * A signed token has the form {@code <deviceId>.<generation>.<keyVersion>.<hmac>},
+ * where the last part is the unpadded Base64url HMAC-SHA256 of the first
+ * three, computed with the server key of that version. The generation
+ * counts the tokens issued to the device, so a leaked token is replaced by
+ * revoking its generation and minting the next one, without rotating the
+ * key of the whole fleet. Keys are configured in
+ * {@code esp32.device-token.keys} as {@code version:base64Secret} pairs
+ * separated by commas. New tokens are signed with the highest version;
+ * every listed key is accepted, so keys are rotated by adding a new one
+ * and removing the old one once its devices have been re-provisioned.
+ * <p>
+ * Revocations are kept as a sorted array of device IDs with the newest
+ * revoked generation of each, merged with the database periodically so
+ * revocations on other nodes take effect too.
+ * <p>
+ * The scheme is off unless {@code esp32.device-token.signed} is set.
+ * Random UUID tokens contain no dots and keep being verified by
+ * {@link DeviceTokenVerifier} as before.
+ */
+@Slf4j
+@Component
+public class SignedDeviceTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final int MIN_KEY_BYTES = 32;
+
+    private final RevokedDeviceTokenRepository revokedRepo;
+    private final boolean enabled;
+    private final TreeMap<Integer, SecretKeySpec> keys = new TreeMap<>();
+    private final int signingVersion;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(SignedDeviceTokens::newMac);
+
+    private volatile Revocations revoked = new Revocations(new long[0], new int[0]);  // Replaced as a whole
+
+    public SignedDeviceTokens(RevokedDeviceTokenRepository revokedRepo,
+                              @Value("${esp32.device-token.signed:false}") boolean enabled,
+                              @Value("${esp32.device-token.keys:}") String keySpec) {
+        this.revokedRepo = revokedRepo;
+        this.enabled = enabled;
+        for (String entry : keySpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Device token key must be version:secret");
+            }
+            int version = Integer.parseInt(entry.substring(0, colon).trim());
+            byte[] secret = Base64.getDecoder().decode(entry.substring(colon + 1).trim());
+            if (version < 0 || secret.length < MIN_KEY_BYTES) {
+                throw new IllegalArgumentException("Device token key " + version
+                        + " needs a non-negative version and at least " + MIN_KEY_BYTES + " bytes");
+            }
+            keys.put(version, new SecretKeySpec(secret, ALGORITHM));
+        }
+        if (enabled && keys.isEmpty()) {
+            throw new IllegalStateException("Signed device tokens enabled without esp32.device-token.keys");
+        }
+        this.signingVersion = keys.isEmpty() ? -1 : keys.lastKey();
+    }
+
+    /**
+     * Indicates whether new devices receive signed tokens.
+     *
+     * @return true if the scheme is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Issues a token for a device, signed with the newest key.
+     *
+     * @param deviceId   the ID of the device
+     * @param generation the token generation of the device
+     * @return the signed token
+     * @throws IllegalStateException if the scheme is disabled
+     */
+    public String mint(Long deviceId, int generation) {
+        if (!enabled) {
+            throw new IllegalStateException("Signed device tokens are disabled");
+        }
+        String payload = deviceId + "." + generation + "." + signingVersion;
+        return payload + "." + ENCODER.encodeToString(sign(keys.get(signingVersion), payload));
+    }
+
+    /**
+     * Indicates whether a token has the signed form rather than a random UUID.
+     *
+     * @param token the token, may be null
+     * @return true if the token is a signed token
+     */
+    public static boolean isSigned(String token) {
+        return token != null && token.indexOf('.') > 0;
+    }
+
+    /**
+     * Verifies a signed token in constant time, without database access.
+     *
+     * @param deviceId the ID the request claims to come from
+     * @param token    a token for which {@link #isSigned} holds
+     * @return true if the token was issued for the device with a known key
+     *         and its generation has not been revoked
+     */
+    public boolean verify(Long deviceId, String token) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        int third = second < 0 ? -1 : token.indexOf('.', second + 1);
+        if (third < 0 || token.indexOf('.', third + 1) >= 0) {
+            return false;
+        }
+        int generation;
+        SecretKeySpec key;
+        byte[] signature;
+        try {
+            if (Long.parseLong(token, 0, first, 10) != deviceId) {
+                return false;
+            }
+            generation = Integer.parseInt(token, first + 1, second, 10);
+            key = keys.get(Integer.parseInt(token, second + 1, third, 10));
+            signature = DECODER.decode(token.substring(third + 1));
+        } catch (IllegalArgumentException e) {
+            // Malformed number or Base64
+            return false;
+        }
+        if (key == null) {
+            // Retired or unknown key version
+            return false;
+        }
+        byte[] expected = sign(key, token.substring(0, third));
+        return MessageDigest.isEqual(expected, signature)
+                && !revoked.rejects(deviceId, generation);
+    }
+
+    /**
+     * Records the revocation of all signed tokens of a device, e.g. when it
+     * is deleted, within the current transaction; it takes effect in memory
+     * after the commit.
+     *
+     * @param device the device to revoke
+     */
+    public void revoke(Device device) {
+        revoke(device, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records the revocation of the signed tokens of a device up to the
+     * given generation within the current transaction; it takes effect in
+     * memory after the commit.
+     *
+     * @param device     the device whose tokens to revoke
+     * @param generation the newest generation to reject
+     */
+    public void revoke(Device device, int generation) {
+        if (!isSigned(device.getDeviceToken())) {
+            // A UUID token is replaced or disappears with its device
+            return;
+        }
+        RevokedDeviceToken entry = revokedRepo.findById(device.getId()).orElseGet(RevokedDeviceToken::new);
+        entry.setDeviceId(device.getId());
+        entry.setGeneration(Math.max(entry.getGeneration(), generation));
+        entry.setRevokedAt(Instant.now());
+        revokedRepo.save(entry);
+    }
+
+    /**
+     * Applies committed revocations of deleted devices and reissued tokens
+     * to the in-memory set.
+     *
+     * @param event the committed change
+     */
+    @TransactionalEventListener
+    public void onConfigChanged(ConfigChangedEvent event) {
+        boolean reissued = event.change() != null
+                && event.change().type() == ConfigChange.Type.TOKEN_REISSUED;
+        if (event.deleted() || reissued) {
+            revokedRepo.findById(event.deviceId())
+                    .ifPresent(entry -> addRevoked(entry.getDeviceId(), entry.getGeneration()));
+        }
+    }
+
+    /**
+     * Loads the revocation set, including revocations made by other nodes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${esp32.device-token.revocation-refresh-seconds:60}",
+            initialDelayString = "${esp32.device-token.revocation-refresh-seconds:60}",
+            timeUnit = TimeUnit.SECONDS)
+    public void reloadRevocations() {
+        List<RevokedDeviceToken> entries = revokedRepo.findAll(Sort.by("deviceId"));
+        long[] deviceIds = new long[entries.size()];
+        int[] generations = new int[entries.size()];
+        for (int i = 0; i < deviceIds.length; i++) {
+            deviceIds[i] = entries.get(i).getDeviceId();
+            generations[i] = entries.get(i).getGeneration();
+        }
+        // Merged rather than replaced: revocations applied since the query must not be lost
+        synchronized (this) {
+            revoked = revoked.merge(new Revocations(deviceIds, generations));
+        }
+        log.debug("Loaded {} revoked device tokens", deviceIds.length);
+    }
+
+    private synchronized void addRevoked(long deviceId, int generation) {
+        long[] ids = revoked.deviceIds();
+        int[] generations = revoked.generations();
+        int index = Arrays.binarySearch(ids, deviceId);
+        if (index >= 0) {
+            if (generations[index] < generation) {
+                int[] next = generations.clone();
+                next[index] = generation;
+                revoked = new Revocations(ids, next);
+            }
+            return;
+        }
+        int insert = -index - 1;
+        long[] nextIds = new long[ids.length + 1];
+        int[] nextGenerations = new int[ids.length + 1];
+        System.arraycopy(ids, 0, nextIds, 0, insert);
+        System.arraycopy(generations, 0, nextGenerations, 0, insert);
+        nextIds[insert] = deviceId;
+        nextGenerations[insert] = generation;
+        System.arraycopy(ids, insert, nextIds, insert + 1, ids.length - insert);
+        System.arraycopy(generations, insert, nextGenerations, insert + 1, ids.length - insert);
+        revoked = new Revocations(nextIds, nextGenerations);
+    }
+
+    private byte[] sign(SecretKeySpec key, String payload) {
+        Mac mac = macs.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid device token key", e);
+        }
+        return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Mac newMac() {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        }
+    }
+
+    /**
+     * Revoked devices sorted by ID, each with the newest generation rejected.
+     */
+    private record Revocations(long[] deviceIds, int[] generations) {
+
+        boolean rejects(long deviceId, int generation) {
+            int index = Arrays.binarySearch(deviceIds, deviceId);
+            return index >= 0 && generation <= generations[index];
+        }
+
+        /**
+         * Unites two sets, keeping the newer revoked generation of a device
+         * listed in both; revocations are never lifted.
+         */
+        Revocations merge(Revocations other) {
+            long[] ids = new long[deviceIds.length + other.deviceIds.length];
+            int[] gens = new int[ids.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < deviceIds.length || j < other.deviceIds.length) {
+                long id;
+                int generation;
+                if (j == other.deviceIds.length
+                        || i < deviceIds.length && deviceIds[i] < other.deviceIds[j]) {
+                    id = deviceIds[i];
+                    generation = generations[i++];
+                } else if (i == deviceIds.length || other.deviceIds[j] < deviceIds[i]) {
+                    id = other.deviceIds[j];
+                    generation = other.generations[j++];
+                } else {
+                    id = deviceIds[i];
+                    generation = Math.max(generations[i++], other.generations[j++]);
+                }
+                ids[n] = id;
+                gens[n++] = generation;
+            }
+            return new Revocations(Arrays.copyOf(ids, n), Arrays.copyOf(gens, n));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.lorenz.esignagep32.codec;
+
+import com.lorenz.esignagep32.dto.ConfigDto;
+import com.lorenz.esignagep32.dto.MessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Round trips of {@link ConfigBinaryCodec} through its reference decoder,
+ * plus the exact bytes of a small configuration as the firmware reads them.
+ */
+class ConfigBinaryCodecTest {
+
+    @Test
+    void roundTripsTypicalConfig() {
+        ConfigDto config = config(List.of(message(1L, "Hello", 2, false), message(2L, "World", 3, true)));
+
+        assertThat(roundTrip(config)).isEqualTo(config);
+    }
+
+    @Test
+    void roundTripsEmptyMessageList() {
+        ConfigDto config = config(List.of());
+
+        assertThat(roundTrip(config)).isEqualTo(config);
+    }
+
+    @Test
+    void encodesMissingMessagesAndStringsAsEmpty() {
+        ConfigDto config = config(null);
+        config.setWifiPassword(null);
+
+        ConfigDto decoded = roundTrip(config);
+
+        assertThat(decoded.getMessages()).isEmpty();
+        assertThat(decoded.getWifiPassword()).isEmpty();
+    }
+
+    @Test
+    void roundTripsLongestMessageTexts() {
+        // Message texts are stored with at most 512 characters
+        List<MessageDto> messages = new ArrayList<>();
+        messages.add(message(1L, "x".repeat(512), 1, true));
+        messages.add(message(2L, "ä".repeat(512), 1, false));
+        messages.add(message(3L, "😀".repeat(512), 1, true));
+        ConfigDto config = config(messages);
+
+        assertThat(roundTrip(config)).isEqualTo(config);
+    }
+
+    @Test
+    void roundTripsNonAsciiText() {
+        ConfigDto config = config(List.of(message(7L, "Grüße – ½ € 日本語 😀", 2, false)));
+        config.setWifiSsid("Café-WLAN");
+        config.setWifiPassword("pässwörd");
+
+        assertThat(roundTrip(config)).isEqualTo(config);
+    }
+
+    @Test
+    void roundTripsLargestValues() {
+        ConfigDto config = config(List.of(message(0xFFFFFFFFL, "max", 0xFF, true)));
+        config.setConfigVersion(0xFFFFFFFFL);
+        config.setDeviceId(0xFFFFFFFFL);
+        config.setUpdateIntervalSeconds(Integer.MAX_VALUE);
+        config.setRotateIntervalSeconds(Integer.MAX_VALUE);
+
+        assertThat(roundTrip(config)).isEqualTo(config);
+    }
+
+    @Test
+    void rejectsValuesOutsideTheFormat() {
+        ConfigDto fontTooLarge = config(List.of(message(1L, "x", 0x100, false)));
+        ConfigDto versionTooLarge = config(List.of());
+        versionTooLarge.setConfigVersion(0x100000000L);
+        ConfigDto negativeInterval = config(List.of());
+        negativeInterval.setUpdateIntervalSeconds(-1);
+        ConfigDto stringTooLong = config(List.of());
+        stringTooLong.setWifiSsid("x".repeat(0x10000));
+
+        for (ConfigDto config : List.of(fontTooLarge, versionTooLarge, negativeInterval, stringTooLong)) {
+            assertThatThrownBy(() -> ConfigBinaryCodec.encode(config))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void encodesDocumentedLayout() {
+        ConfigDto config = new ConfigDto();
+        config.setConfigVersion(0x01020304L);
+        config.setDeviceId(5L);
+        config.setUpdateIntervalSeconds(60);
+        config.setRotateIntervalSeconds(10);
+        config.setWifiSsid("ab");
+        config.setWifiPassword("");
+        config.setNtpServer("");
+        config.setServerDomain("");
+        config.setDeviceToken("t");
+        config.setMessages(List.of(message(9L, "é", 3, true)));
+
+        byte[] expected = {
+                'E', 'S', 'C', 1,
+                4, 3, 2, 1,
+                5, 0, 0, 0,
+                60, 0, 0, 0,
+                10, 0, 0, 0,
+                2, 0, 'a', 'b',
+                0, 0,
+                0, 0,
+                0, 0,
+                1, 0, 't',
+                1, 0,
+                9, 0, 0, 0, 3, 1, 2, 0, (byte) 0xC3, (byte) 0xA9
+        };
+        assertThat(ConfigBinaryCodec.encode(config)).containsExactly(expected);
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        byte[] encoded = ConfigBinaryCodec.encode(config(List.of(message(1L, "Hello", 2, false))));
+        byte[] badMagic = encoded.clone();
+        badMagic[0] = 'X';
+        byte[] badFormat = encoded.clone();
+        badFormat[3] = 2;
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+
+        for (byte[] data : List.of(badMagic, badFormat, truncated, trailing)) {
+            assertThatThrownBy(() -> ConfigBinaryCodec.decode(data))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static ConfigDto roundTrip(ConfigDto config) {
+        return ConfigBinaryCodec.decode(ConfigBinaryCodec.encode(config));
+    }
+
+    private static ConfigDto config(List<MessageDto> messages) {
+        ConfigDto config = new ConfigDto();
+        config.setWifiSsid("Office");
+        config.setWifiPassword("secret");
+        config.setNtpServer("pool.ntp.org");
+        config.setServerDomain("signage.example.com");
+        config.setDeviceId(42L);
+        config.setDeviceToken("42.1.c2lnbmF0dXJl");
+        config.setConfigVersion(17);
+        config.setUpdateIntervalSeconds(60);
+        config.setRotateIntervalSeconds(10);
+        config.setMessages(messages);
+        return config;
+    }
+
+    private static MessageDto message(Long id, String text, int fontSize, boolean scroll) {
+        MessageDto message = new MessageDto();
+        message.setId(id);
+        message.setText(text);
+        message.setFontSize(fontSize);
+        message.setScroll(scroll);
+        return message;
+    }
+}
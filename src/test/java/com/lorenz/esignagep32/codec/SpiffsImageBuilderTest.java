@@ -0,0 +1,239 @@
+package com.lorenz.esignagep32.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reads images of {@link SpiffsImageBuilder} back with an independent
+ * SPIFFS reader, following the on-flash layout of the SPIFFS library as
+ * configured by the ESP32 Arduino core, and compares them byte for byte
+ * with images of mkspiffs.
+ * <p>
+ * The mkspiffs images are built from {@code spiffs/<case>/config.json}
+ * with the flags the server used to run mkspiffs with, see the Dockerfile:
+ * {@code mkspiffs -c spiffs/<case> -b 4096 -p 256 -s 0x160000 spiffs/<case>.bin},
+ * run in {@code src/test/resources} with the newest mkspiffs of the ESP32
+ * Arduino core. The read-back tests share the builder's layout assumptions
+ * and only the comparison with mkspiffs can catch a drift in them.
+ */
+class SpiffsImageBuilderTest {
+
+    private static final int BLOCK_SIZE = 4096;
+    private static final int PAGE_SIZE = 256;
+    private static final int PAGES_PER_BLOCK = BLOCK_SIZE / PAGE_SIZE;
+    private static final int LOOKUP_ENTRIES = PAGES_PER_BLOCK - 1;  // Page 0 of a block is the lookup
+    private static final int INDEX_HEADER_SIZE = 49;
+    private static final int DATA_PAGE_SIZE = PAGE_SIZE - 5;
+    private static final int MAX_FILE_SIZE = (PAGE_SIZE - INDEX_HEADER_SIZE) / 2 * DATA_PAGE_SIZE;
+
+    // Page flags are cleared to set them
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_FINAL = 1 << 1;
+    private static final int FLAG_INDEX = 1 << 2;
+    private static final int FLAG_DELET = 1 << 7;
+    private static final int OBJ_ID_INDEX_FLAG = 0x8000;
+    private static final int FREE = 0xFFFF;
+
+    private final SpiffsImageBuilder builder = new SpiffsImageBuilder();
+
+    @Test
+    void usesPartitionGeometry() {
+        assertThat(builder.imageSize()).isEqualTo(0x160000);
+        assertThat(builder.blockSize()).isEqualTo(BLOCK_SIZE);
+    }
+
+    @Test
+    void readsBackSmallFile() {
+        byte[] content = "{\"deviceId\":4711,\"wifiSsid\":\"Café\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertReadsBack("/config.json", content);
+    }
+
+    @Test
+    void readsBackEmptyFile() {
+        assertReadsBack("/config.json", new byte[0]);
+    }
+
+    @Test
+    void readsBackFileSpanningBlocks() {
+        // Several write chunks, each moving the index header, across two blocks
+        assertThat(builder.blocksFor(3000)).isEqualTo(2);
+
+        assertReadsBack("/config.json", randomBytes(3000));
+    }
+
+    @Test
+    void readsBackLargestFile() {
+        assertReadsBack("/c", randomBytes(MAX_FILE_SIZE));
+    }
+
+    @Test
+    void rejectsFilesThatDoNotFit() {
+        byte[] image = newImage();
+
+        assertThatThrownBy(() -> builder.blocksFor(MAX_FILE_SIZE + 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.writeFile(image, "/" + "x".repeat(31), new byte[1]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.writeFile(new byte[BLOCK_SIZE], "/config.json", new byte[3000]))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void formatsEveryBlock() {
+        byte[] image = newImage();
+        int blocks = image.length / BLOCK_SIZE;
+
+        for (int bix = 0; bix < blocks; bix++) {
+            int base = bix * BLOCK_SIZE;
+            assertThat(getShort(image, base + PAGE_SIZE - 4))
+                    .as("magic of block %d", bix)
+                    .isEqualTo((0x20140529 ^ PAGE_SIZE ^ (blocks - bix)) & 0xFFFF);
+            assertThat(getShort(image, base + PAGE_SIZE - 2)).as("erase count").isZero();
+            for (int entry = 0; entry < LOOKUP_ENTRIES; entry++) {
+                assertThat(getShort(image, base + entry * 2)).isEqualTo(FREE);
+            }
+            byte[] pages = Arrays.copyOfRange(image, base + PAGE_SIZE, base + BLOCK_SIZE);
+            assertThat(pages).containsOnly((byte) 0xFF);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"setup", "empty", "pages"})
+    void matchesMkspiffs(String fixture) throws IOException {
+        byte[] content = resource("spiffs/" + fixture + "/config.json");
+        byte[] reference = resource("spiffs/" + fixture + ".bin");
+        assertThat(reference)
+                .as("mkspiffs image spiffs/%s.bin, generate it as described on this class", fixture)
+                .isNotNull();
+
+        byte[] image = newImage();
+        builder.writeFile(image, "/config.json", content);
+        byte[] expected = withoutHeaderPadding(reference);
+
+        assertThat(Arrays.equals(image, expected))
+                .as("image of %s equals mkspiffs output, first difference at %d",
+                        fixture, Arrays.mismatch(image, expected))
+                .isTrue();
+    }
+
+    /**
+     * Sets the alignment bytes after the page header of every index header
+     * to 0xFF, as the builder writes them. mkspiffs copies them from an
+     * uninitialized stack variable and SPIFFS never reads them.
+     */
+    private static byte[] withoutHeaderPadding(byte[] reference) {
+        byte[] image = reference.clone();
+        for (int addr = 0; addr < image.length; addr += PAGE_SIZE) {
+            int objId = getShort(image, addr);
+            if (addr % BLOCK_SIZE != 0 && objId != FREE && (objId & OBJ_ID_INDEX_FLAG) != 0
+                    && getShort(image, addr + 2) == 0) {
+                Arrays.fill(image, addr + 5, addr + 8, (byte) 0xFF);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = SpiffsImageBuilderTest.class.getClassLoader().getResourceAsStream(name)) {
+            return in == null ? null : in.readAllBytes();
+        }
+    }
+
+    private void assertReadsBack(String name, byte[] content) {
+        byte[] image = newImage();
+        builder.writeFile(image, name, content);
+
+        // Exactly one live index header, found through the object lookup
+        int header = -1;
+        for (int page : usedPages(image)) {
+            int addr = page * PAGE_SIZE;
+            int objId = getShort(image, addr);
+            int flags = image[addr + 4] & 0xFF;
+            if ((objId & OBJ_ID_INDEX_FLAG) != 0 && (flags & FLAG_DELET) != 0) {
+                assertThat(header).as("second live index header").isEqualTo(-1);
+                assertThat(flags & (FLAG_USED | FLAG_FINAL | FLAG_INDEX)).isZero();
+                assertThat(getShort(image, addr + 2)).as("index span").isZero();
+                header = addr;
+            }
+        }
+        assertThat(header).as("index header").isNotNegative();
+        int objId = getShort(image, header) & ~OBJ_ID_INDEX_FLAG;
+
+        // A file never written to keeps the undefined length, read as empty
+        int size = getInt(image, header + 8);
+        assertThat(size == -1 ? 0 : size).isEqualTo(content.length);
+        size = Math.max(0, size);
+        assertThat(image[header + 12]).as("file type").isEqualTo((byte) 1);
+        byte[] nameBytes = Arrays.copyOfRange(image, header + 13, header + 13 + 32);
+        int nameLength = 0;
+        while (nameBytes[nameLength] != 0) {
+            nameLength++;
+        }
+        assertThat(new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8)).isEqualTo(name);
+
+        // Data pages in span order as listed by the index header
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        for (int span = 0; read.size() < size; span++) {
+            int page = getShort(image, header + INDEX_HEADER_SIZE + span * 2);
+            int addr = page * PAGE_SIZE;
+            assertThat(lookupEntry(image, page)).as("lookup of data page %d", page).isEqualTo(objId);
+            assertThat(getShort(image, addr)).isEqualTo(objId);
+            assertThat(getShort(image, addr + 2)).isEqualTo(span);
+            assertThat(image[addr + 4] & (FLAG_USED | FLAG_FINAL | FLAG_INDEX))
+                    .as("data page flags").isEqualTo(FLAG_INDEX);
+            read.write(image, addr + 5, Math.min(DATA_PAGE_SIZE, size - read.size()));
+        }
+        assertThat(read.toByteArray()).isEqualTo(content);
+
+        // Blocks beyond the file stay untouched
+        int used = builder.blocksFor(content.length) * BLOCK_SIZE;
+        byte[] empty = newImage();
+        assertThat(Arrays.copyOfRange(image, used, image.length))
+                .isEqualTo(Arrays.copyOfRange(empty, used, empty.length));
+    }
+
+    private int[] usedPages(byte[] image) {
+        return IntStream.range(0, image.length / PAGE_SIZE)
+                .filter(page -> page % PAGES_PER_BLOCK != 0)
+                .filter(page -> lookupEntry(image, page) != FREE && lookupEntry(image, page) != 0)
+                .toArray();
+    }
+
+    private static int lookupEntry(byte[] image, int page) {
+        int block = page / PAGES_PER_BLOCK;
+        return getShort(image, block * BLOCK_SIZE + (page % PAGES_PER_BLOCK - 1) * 2);
+    }
+
+    private byte[] newImage() {
+        byte[] image = new byte[builder.imageSize()];
+        builder.format(image, 0);
+        return image;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static int getShort(byte[] buf, int off) {
+        return (buf[off] & 0xFF) | (buf[off + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(byte[] buf, int off) {
+        return getShort(buf, off) | getShort(buf, off + 2) << 16;
+    }
+}
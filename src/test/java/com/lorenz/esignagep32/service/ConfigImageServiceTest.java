@@ -0,0 +1,47 @@
+package com.lorenz.esignagep32.service;
+
+import com.lorenz.esignagep32.codec.SpiffsImageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The patched template of {@link ConfigImageService} against an image
+ * built in full by {@link SpiffsImageBuilder}.
+ */
+class ConfigImageServiceTest {
+
+    private final ConfigImageService imageService = new ConfigImageService();
+    private final SpiffsImageBuilder builder = new SpiffsImageBuilder();
+
+    @Test
+    void patchedTemplateEqualsFullBuild() throws IOException {
+        byte[] json = "{\"deviceId\":4711,\"deviceToken\":\"4711.1.c2ln\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = new byte[builder.imageSize()];
+        builder.format(expected, 0);
+        builder.writeFile(expected, "/config.json", json);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        imageService.writeImage(json, out);
+
+        assertThat(out.toByteArray()).isEqualTo(expected);
+    }
+
+    @Test
+    void leavesTemplateUntouched() {
+        byte[] first = "{\"deviceId\":1}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer[] parts = imageService.buildImage(first);
+        parts[0].put(0, (byte) 0);
+
+        ByteBuffer[] next = imageService.buildImage(new byte[0]);
+
+        assertThat(next[0].get(0)).isNotZero();
+        assertThat(next[1].isReadOnly()).isTrue();
+        assertThat(next[0].remaining() + next[1].remaining()).isEqualTo(imageService.imageSize());
+    }
+}